@@ -27,6 +27,11 @@ public class GameGrid {
      */
     private int range;
 
+    /**
+     * The number of times a coordinate has been set since construction.
+     */
+    private int modificationCount;
+
     /**
      * Helper method:
      * Generates a grid with the given range, starting from the origin (the centre) and maintaining a
@@ -60,6 +65,7 @@ public class GameGrid {
     public GameGrid(int range) {
         this.range = range;
         this.grid = generate(range);
+        this.modificationCount = 0;
     }
 
     /**
@@ -88,6 +94,17 @@ public class GameGrid {
      */
     public void setCoordinate(Coordinate coordinate, GridComponent component) {
         this.grid.put(coordinate, component);
+        this.modificationCount++;
+    }
+
+    /**
+     * Get the number of times setCoordinate has been called on this grid. Two equal values mean
+     * the components of the grid have not been replaced in between.
+     *
+     * @return The modification count of the grid.
+     */
+    public int getModificationCount() {
+        return this.modificationCount;
     }
 
 }
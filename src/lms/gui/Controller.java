@@ -1,16 +1,9 @@
 package lms.gui;
 
-import lms.exceptions.BadStateException;
-import lms.logistics.Path;
-import lms.logistics.Transport;
-import lms.grid.GameGrid;
-import lms.grid.GridComponent;
+import lms.simulation.SimulationClock;
+import lms.simulation.SimulationEngine;
 
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Controller class for the GUI.
@@ -26,6 +19,11 @@ public class Controller {
      */
     private final ViewModel viewModel;
 
+    /**
+     * Clock pacing the ticks against the frames drawn.
+     */
+    private final SimulationClock clock;
+
     /**
      * Create a new Controller for the given view, adding ActionListener to
      * the view.
@@ -34,78 +32,55 @@ public class Controller {
      */
     public Controller(ViewModel viewModel) {
         this.viewModel = viewModel;
+        this.clock = new SimulationClock(1);
+    }
+
+    /**
+     * Returns the clock pacing the simulation, whose rate, speed and uncapped mode can be set
+     * while it runs. It starts at one tick per second.
+     *
+     * @return the simulation clock
+     */
+    public SimulationClock getClock() {
+        return clock;
     }
 
     /**
-     * JavaDoc not provided since this is a given piece of code
+     * Starts ticking the view's map at the clock's rate, repainting the canvas once per frame
+     * after running the ticks that fell due. Ticks are skipped while the view is paused, and
+     * lines that can never change are not ticked. The speed and uncapped mode chosen in the
+     * view are passed on to the clock before each frame.
      */
     public void run() {
-        Timer timer = new Timer(1000, e -> {
+        SimulationEngine engine = new SimulationEngine(viewModel.getMap());
+        engine.setPruning(true);
+        Timer timer = new Timer(1000 / SimulationClock.DEFAULT_FRAME_RATE, e -> {
             if (viewModel.isPaused()) {
+                clock.reset();
                 return;
             }
-
-            GameGrid map = viewModel.getMap();
-            List<Path> paths = new ArrayList<>();
-            Map<Transport, Path> pathLog = new HashMap<>();
-
-            for (GridComponent component : map.getGrid().values()) {
-
-                if (!(component instanceof Transport transport)) {
-                    continue;
-                }
-                if (pathLog.containsKey(transport)) {
-                    continue;
-                }
-                List<Path> search = new ArrayList<>();
-                List<Path> x = List.of(transport.getPath(), transport.getPath());
-                search.add(x.get(0));
-
-                for (Path path : search) {
-                    if (!path.tail().equals(path)) {
-                        continue;
-                    }
-                    Transport t = path.getNode();
-                    while (true) {
-                        pathLog.put(t, path);
-
-                        if (path.getPrevious() == null) {
-                            break;
-                        }
-                        Transport previousNode = path.getPrevious().getNode();
-                        List<Path> x1 = List.of(
-                                new Path(previousNode.getPath()),
-                                new Path(previousNode.getPath())
-                        );
-
-                        t = previousNode;
-                        x = x1;
-                       // x.get(0).next(x.get(1).next()) ;//= path;
-
-                        x.get(0).setNext(path);
-                        x.get(1).setNext(path);
-
-
-                        path = x.get(0);
-                    }
-                    paths.add(path.tail());
-                }
+            applyControls();
+            if (clock.runFrame(engine) > 0) {
+                viewModel.getCanvas().repaint();
             }
-
-            System.out.println(paths.size());
-            for (Path p : paths) {
-                System.out.println(p);
-                try {
-                    p.applyAll(Transport::tick);
-                } catch (BadStateException bse) {
-                    System.err.println("Tick could not be processed:" + bse);
-                }
-            }
-            viewModel.getCanvas().repaint();
         });
         timer.setInitialDelay(0);
         timer.setRepeats(true);
         timer.start();
     }
 
+    /**
+     * Helper Method:
+     * Sets the clock's speed and uncapped mode to the ones chosen in the view, if they have
+     * changed.
+     */
+    private void applyControls() {
+        if (clock.getSpeed() != viewModel.getSpeed()) {
+            clock.setSpeed(viewModel.getSpeed());
+        }
+        if (clock.isUncapped() != viewModel.isUncapped()) {
+            clock.setUncapped(viewModel.isUncapped());
+        }
+    }
+
 }
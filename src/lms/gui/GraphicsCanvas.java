@@ -3,6 +3,9 @@ package lms.gui;
 import lms.logistics.Item;
 import lms.logistics.Path;
 import lms.logistics.Transport;
+import lms.logistics.belts.ExpressBelt;
+import lms.logistics.belts.Junction;
+import lms.logistics.belts.MultiSlotBelt;
 import lms.logistics.container.Receiver;
 import lms.logistics.container.Producer;
 import lms.grid.Coordinate;
@@ -30,11 +33,21 @@ import java.util.List;
  */
 class GraphicsCanvas extends JPanel {
 
+    /**
+     * Stroke used for the links between Transport nodes, shared by every frame
+     */
+    private static final Stroke LINK_STROKE = new BasicStroke(3);
+
     /**
      * Stores the hexagons in a List of DrawnElements
      */
     private final List<DrawnElement> hexagons;
 
+    /**
+     * The DrawnElement of each Transport node, so links can be drawn without searching
+     */
+    private final Map<Transport, DrawnElement> transports;
+
     /**
      * Stores the hover polygon
      */
@@ -75,6 +88,16 @@ class GraphicsCanvas extends JPanel {
         private GridComponent component;
         //  method [getComponent]
 
+        /**
+         * Stores the input and output Paths the directions were last worked out for
+         */
+        private final Path[] links = new Path[2];
+
+        /**
+         * Stores the direction of the input and output links, reused while they are unchanged
+         */
+        private final Orientation[] directions = new Orientation[2];
+
         public DrawnElement(Coordinate coordinate, Polygon polygon, int x, int y,
                             GridComponent component) {
             this.coordinate = coordinate;
@@ -95,6 +118,7 @@ class GraphicsCanvas extends JPanel {
         super();
         this.setPreferredSize(new Dimension(prefWidth, prefHeight));
         hexagons = new ArrayList<>();
+        transports = new IdentityHashMap<>();
         hoverPolygon = null;
         addMouseMotionListener(new MouseAdapter() {
 
@@ -162,7 +186,7 @@ class GraphicsCanvas extends JPanel {
 
         Coordinate origin = new Coordinate();
 
-        hexagons.add(new DrawnElement(origin, drawHexagon(x, y), x, y, grid.get(origin)));
+        addElement(new DrawnElement(origin, drawHexagon(x, y), x, y, grid.get(origin)));
         tasklist.add(origin);
 
         int size = getHexagonSize();
@@ -214,7 +238,7 @@ class GraphicsCanvas extends JPanel {
                             x -= size;
                         }
                     }
-                    hexagons.add(new DrawnElement(c, drawHexagon(x, y), x, y,
+                    addElement(new DrawnElement(c, drawHexagon(x, y), x, y,
                             grid.getOrDefault(c, () -> "ERROR")));
                     System.out.println("Drew " + c + " as " + grid.getOrDefault(c, () -> "ERROR")
                             .getEncoding() + " : from - " + target + " - as " + direction);
@@ -225,6 +249,18 @@ class GraphicsCanvas extends JPanel {
     }
 
 
+    /**
+     * Adds a DrawnElement to the hexagons, indexing it by its Transport node if it has one.
+     *
+     * @param element the element to add
+     */
+    private void addElement(DrawnElement element) {
+        hexagons.add(element);
+        if (element.component instanceof Transport transport) {
+            transports.put(transport, element);
+        }
+    }
+
     /**
      * Draws a line between the specified coordinates and the middle of one of
      * the sides of the specified polygon, based on the specified orientation.
@@ -279,24 +315,47 @@ class GraphicsCanvas extends JPanel {
 
         /* Draw the line between the specified starting point and the midpoint of the side */
         Stroke s = graphics2D.getStroke();
-        graphics2D.setStroke(new BasicStroke(3));
+        graphics2D.setStroke(LINK_STROKE);
         graphics2D.drawLine(x, y, midX, midY);
         graphics2D.setStroke(s);
     }
 
     /**
-     * Returns the DrawnElement that contains a Transport component with the specified ID.
+     * Returns the DrawnElement that contains the specified Transport component.
+     *
+     * @param transport the Transport component to look up
+     * @return the DrawnElement that contains the Transport component
+     * @throws RuntimeException if no DrawnElement contains the Transport component
+     */
+    private DrawnElement getElementByTransport(Transport transport) {
+        DrawnElement element = transports.get(transport);
+        if (element == null) {
+            throw new RuntimeException();
+        }
+        return element;
+    }
+
+    /**
+     * Draws the line from an element towards the node at the other end of one of its Paths.
+     * The direction is only worked out again when the Path changes, so repainting an
+     * unchanged grid creates no objects.
      *
-     * @param id the ID of the Transport component to search for
-     * @return the DrawnElement that contains the Transport component with the specified ID
-     * @throws RuntimeException if no DrawnElement is found with the specified Transport ID
+     * @param graphics2D the graphics context to use for drawing the line
+     * @param element the element the line starts from
+     * @param side 0 for the input Path, 1 for the output Path
+     * @param link the input or output Path of the element's Transport, may be null
      */
-    private DrawnElement getElementByTransportId(int id) {
-        return hexagons.stream()
-                .filter(el -> el.component instanceof Transport)
-                .filter(el -> ((Transport) el.component).getId() == id)
-                .findAny()
-                .orElseThrow(RuntimeException::new);
+    private void drawLink(Graphics2D graphics2D, DrawnElement element, int side, Path link) {
+        if (link == null) {
+            return;
+        }
+        if (element.links[side] != link) {
+            Coordinate other = getElementByTransport(link.getNode()).coordinate;
+            element.directions[side] = element.coordinate.getDirection(other);
+            element.links[side] = link;
+        }
+        drawLine(graphics2D, element.polygon, element.cordX, element.cordY,
+                element.directions[side]);
     }
 
     /**
@@ -311,25 +370,17 @@ class GraphicsCanvas extends JPanel {
             int x = element.cordX;
             int y = element.cordY;
             // Draw line
-            Coordinate coordinate = element.coordinate;
-            List<Path> nodes = new ArrayList<>();
-            nodes.add(transport.getInput());
-            nodes.add(transport.getOutput());
-
-            for (Path node : nodes) {
-                if (node == null) {
-                    continue;
-                }
-                Transport item = node.getNode();
-                Coordinate other = getElementByTransportId(item.getId()).coordinate;
-                Orientation direction = coordinate.getDirection(other);
-                drawLine(graphics2D, element.polygon, x, y, direction);
-            }
+            drawLink(graphics2D, element, 0, transport.getInput());
+            drawLink(graphics2D, element, 1, transport.getOutput());
             // Draw box
             if (component instanceof Receiver) {
                 graphics2D.setPaint(Color.GREEN);
             } else if (component instanceof Producer) {
                 graphics2D.setPaint(Color.MAGENTA);
+            } else if (component instanceof ExpressBelt) {
+                graphics2D.setPaint(Color.BLUE);
+            } else if (component instanceof Junction) {
+                graphics2D.setPaint(Color.ORANGE);
             } else {
                 graphics2D.setPaint(Color.BLACK);
             }
@@ -341,6 +392,14 @@ class GraphicsCanvas extends JPanel {
                 graphics2D.setPaint(Color.RED);
                 graphics2D.fillRect(x - 2, y - 2, 5, 5);
             }
+            // Draw fill level
+            if (component instanceof MultiSlotBelt belt) {
+                graphics2D.setPaint(Color.BLACK);
+                graphics2D.drawRect(x - 11, y + 9, 22, 4);
+                graphics2D.setPaint(Color.RED);
+                int width = (int) (21L * belt.getSize() / belt.getCapacity());
+                graphics2D.fillRect(x - 10, y + 10, width, 3);
+            }
         } else {
             Polygon hexagon = element.polygon;
             switch (component.getEncoding()) {
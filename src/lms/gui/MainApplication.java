@@ -38,6 +38,21 @@ public class MainApplication {
      */
     public MainApplication(String title, int width, int height, String save)
             throws FileFormatException {
+        this(title, width, height, save, 1);
+    }
+
+    /**
+     * Instantiates the view and controller for this application, ticking at the given rate.
+     *
+     * @param title  String setting the title for the panel
+     * @param width  int setting the width for the panel
+     * @param height int setting the height for the panel
+     * @param save   String setting the save file to load
+     * @param rate   double setting the ticks per second at a speed of 1
+     * @throws IllegalArgumentException if rate is not positive
+     */
+    public MainApplication(String title, int width, int height, String save, double rate)
+            throws FileFormatException, IllegalArgumentException {
         this.SCREEN_WIDTH = width;
         this.SCREEN_HEIGHT = height;
 
@@ -66,6 +81,7 @@ public class MainApplication {
          */
         ViewModel viewModel = new ViewModel(mainFrame, gameGrid);
         final Controller controller = new Controller(viewModel); // Thread
+        controller.getClock().setTargetRate(rate);
 
         /* add frame prepared by the view to the mainFrame JFrame */
         mainFrame.add(viewModel.getPanel());
@@ -90,8 +106,8 @@ public class MainApplication {
          * Debug Configurations to set the path as a command line argument. */
         //args = new String[]{"saves/grid1.txt"};
 
-        if (args.length != 1) {
-            System.err.println("Usage: save_file\n");
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: save_file [ticks_per_second]\n");
             System.err.println("You did not specify the names of the required save file"
                     + " from which to load.");
             System.err.println("To do this, you need to add the command line "
@@ -106,11 +122,15 @@ public class MainApplication {
             System.exit(1);
         }
         try {
-            new MainApplication("Logistics Puzzle", 800, 700, args[0]);
+            double rate = args.length == 2 ? Double.parseDouble(args[1]) : 1;
+            new MainApplication("Logistics Puzzle", 800, 700, args[0], rate);
             // Width and height chosen with sufficient size to fit all example saves
         } catch (FileFormatException e) {
             System.err.println("File was incorrectly formatted");
             e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ticks per second must be a positive number");
+            System.exit(1);
         }
     }
 
@@ -23,6 +23,16 @@ public class ViewModel {
      */
     private boolean isPaused;
 
+    /**
+     * Speed multiplier the simulation should run at.
+     */
+    private double speed;
+
+    /**
+     * Whether the simulation should run as fast as it can.
+     */
+    private boolean isUncapped;
+
     /**
      * The map to draw
      */
@@ -59,6 +69,8 @@ public class ViewModel {
         this.map = map;
         rootPanel = new JPanel();
         isPaused = false;
+        speed = 1;
+        isUncapped = false;
         addMenuBar(frame);
         addComponents();
     }
@@ -87,6 +99,22 @@ public class ViewModel {
         return isPaused;
     }
 
+    /**
+     * Get the speed multiplier chosen from the speed menu
+     * @return speed multiplier, from 1/64 to 64
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Get the uncapped status chosen from the speed menu
+     * @return true if the simulation should ignore its rate and run as fast as it can
+     */
+    public boolean isUncapped() {
+        return isUncapped;
+    }
+
     /**
      * Add the menu bar to the JFrame
      * <p>
@@ -118,6 +146,27 @@ public class ViewModel {
         /* Add the pauseMenu item to the menuBar */
         menu.add(pausedMenu);
 
+        /* Create a menu for the simulation speed, doubling or halving it up to 64 times */
+        JMenu speedMenu = new JMenu("Speed");
+
+        JMenuItem faster = new JMenuItem("Faster", KeyEvent.VK_F);
+        faster.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, ActionEvent.SHIFT_MASK));
+        faster.addActionListener(e -> speed = Math.min(speed * 2, 64));
+        speedMenu.add(faster);
+
+        JMenuItem slower = new JMenuItem("Slower", KeyEvent.VK_S);
+        slower.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, ActionEvent.SHIFT_MASK));
+        slower.addActionListener(e -> speed = Math.max(speed / 2, 1.0 / 64));
+        speedMenu.add(slower);
+
+        JMenuItem toggleUncapped = new JMenuItem("Toggle uncapped", KeyEvent.VK_U);
+        toggleUncapped.setAccelerator(KeyStroke.getKeyStroke(
+                KeyEvent.VK_U, ActionEvent.SHIFT_MASK));
+        toggleUncapped.addActionListener(e -> isUncapped = !isUncapped);
+        speedMenu.add(toggleUncapped);
+
+        menu.add(speedMenu);
+
         /* Add the menu bar to the frame */
         frame.setJMenuBar(menu);
     }
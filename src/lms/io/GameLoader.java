@@ -5,15 +5,23 @@ import lms.grid.Coordinate;
 import lms.grid.GameGrid;
 import lms.grid.GridComponent;
 import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
 import lms.logistics.Path;
+import lms.logistics.Transport;
 import lms.logistics.belts.Belt;
+import lms.logistics.belts.ExpressBelt;
+import lms.logistics.belts.Junction;
+import lms.logistics.belts.MultiSlotBelt;
 import lms.logistics.container.Producer;
+import lms.logistics.container.ProductionRate;
 import lms.logistics.container.Receiver;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class is responsible for loading (reading and parsing) a text file containing details
@@ -27,9 +35,22 @@ import java.util.*;
  * (or more) of a Producer and Receiver, are conveyor belt nodes. Each belt node transports the
  * Items produced by the Producer towards the direction of the connected Receiver(s). Each
  * production line, can have one or more Producer, and one or more Receiver.
+ *
+ * A producer key line may follow the item name with the producer's ProductionRate: a period,
+ * then optionally a phase and a burst pattern, e.g. "aa 4 1 0110".
+ *
+ * Lines branch and join at Junction nodes ("j"). A Junction's linking line lists all of its
+ * inputs and outputs, separated by semicolons, e.g. "7-2;3,8;9".
  */
 public class GameLoader {
 
+    /**
+     * A producer key line ending in a rate: the item name, then a period, optionally a phase,
+     * and optionally a burst pattern
+     */
+    private static final Pattern RATED_KEY =
+            Pattern.compile("(.*?) +([0-9]+(?: +[0-9]+(?: +[01]+)?)?)");
+
     /**
      * Constructor
      */
@@ -169,8 +190,7 @@ public class GameLoader {
                 switch (s) {
                     case "p" -> {
                         try {
-                            Item key = new Item(producerKey.get(producerIndex));
-                            Producer toGrid = new Producer(column, key);
+                            Producer toGrid = producer(column, producerKey.get(producerIndex));
                             elements.add(toGrid);
                             elementsPath.add(toGrid.getPath());
                             gameGrid.setCoordinate(new Coordinate(xcord + buffer,
@@ -185,7 +205,7 @@ public class GameLoader {
                     }
                     case "r" -> {
                         try {
-                            Item key = new Item(receiverKey.get(receiverIndex));
+                            Item key = ItemRegistry.intern(receiverKey.get(receiverIndex));
                             Receiver toGrid = new Receiver(column, key);
                             elements.add(toGrid);
                             elementsPath.add(toGrid.getPath());
@@ -198,6 +218,15 @@ public class GameLoader {
                             throw new FileFormatException();
                         }
                     }
+                    case "j" -> {
+                        Junction toGrid = new Junction(column);
+                        elements.add(toGrid);
+                        elementsPath.add(toGrid.getPath());
+                        gameGrid.setCoordinate(new Coordinate(xcord + buffer, -range + i),
+                                toGrid);
+                        buffer++;
+                        column++;
+                    }
                     case "b" -> {
                         Belt toGrid = new Belt(column);
                         elements.add(toGrid);
@@ -217,7 +246,19 @@ public class GameLoader {
                             () -> "w");
                         buffer++;
                     }
-                    default -> throw new FileFormatException();
+                    default -> {
+                        /* m<k>, a belt holding k items, or e<s>, a belt of speed s */
+                        Belt toGrid = s.startsWith("e")
+                                ? new ExpressBelt(column, tier(s, 'e', ExpressBelt.MAX_SPEED))
+                                : new MultiSlotBelt(column, tier(s, 'm',
+                                        MultiSlotBelt.MAX_CAPACITY));
+                        elements.add(toGrid);
+                        elementsPath.add(toGrid.getPath());
+                        gameGrid.setCoordinate(new Coordinate(xcord + buffer, -range + i),
+                                toGrid);
+                        buffer++;
+                        column++;
+                    }
                 }
 
             }
@@ -228,6 +269,54 @@ public class GameLoader {
         }
     }
 
+    /**
+     * Helper Method:
+     * Creates a producer from its key line, the item name optionally followed by its rate.
+     * Only a tail of numbers shaped like a rate is read as one, so a key line without a rate,
+     * such as "iron ore", is read as the key exactly as before
+     *
+     * @param id the producer's id
+     * @param keyLine the producer key line
+     * @return the producer
+     * @throws FileFormatException if the rate is not valid
+     */
+    private static Producer producer(int id, String keyLine) throws FileFormatException {
+        Matcher rated = RATED_KEY.matcher(keyLine.trim());
+        if (!rated.matches()) {
+            return new Producer(id, ItemRegistry.intern(keyLine));
+        }
+        try {
+            return new Producer(id, ItemRegistry.intern(rated.group(1)),
+                    ProductionRate.parse(rated.group(2)));
+        } catch (IllegalArgumentException e) {
+            throw new FileFormatException();
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Reads the number following the letter of a belt tier's encoding, the capacity of a
+     * multi slot belt or the speed of an express belt
+     *
+     * @param encoding the tile encoding, the letter followed by the number
+     * @param letter the letter the encoding must start with
+     * @param max the largest number allowed
+     * @return the number
+     * @throws FileFormatException if the encoding is not the letter followed by a number
+     * from 1 to max
+     */
+    private static int tier(String encoding, char letter, int max)
+            throws FileFormatException {
+        if (encoding.charAt(0) != letter || !encoding.substring(1).matches("[0-9]{1,9}")) {
+            throw new FileFormatException();
+        }
+        int number = Integer.parseInt(encoding.substring(1));
+        if (number < 1 || number > max) {
+            throw new FileFormatException();
+        }
+        return number;
+    }
+
     /**
      * Helper Method:
      * sets in put and out put nodes for the given nodes
@@ -251,8 +340,14 @@ public class GameLoader {
                     throw new FileFormatException();
                 }
 
-                if (beltNext.length == 2 && !(beltNext[1].isEmpty()) && elements
-                        .get(Integer.parseInt(current[0]) - 1).getClass() != Belt.class) {
+                if (elements.get(Integer.parseInt(current[0]) - 1) instanceof Junction junction) {
+                    junctionLinks(junction, beltNext, current, elements, elementsPath);
+                    line = newReader.readLine();
+                    continue;
+                }
+
+                if (beltNext.length == 2 && !(beltNext[1].isEmpty()) && !(elements
+                        .get(Integer.parseInt(current[0]) - 1) instanceof Belt)) {
                     throw new FileFormatException();
 
                 } else if (beltNext.length == 2 && !(beltNext[1].isEmpty())) {
@@ -263,7 +358,7 @@ public class GameLoader {
                 }
 
                 if (current.length == 2 && elements
-                        .get(Integer.parseInt(current[0]) - 1).getClass() == Belt.class) {
+                        .get(Integer.parseInt(current[0]) - 1) instanceof Belt) {
 
                     ((Belt) elements.get(Integer.parseInt(current[0]) - 1)).setInput(
                         elementsPath.get(Integer.parseInt(current[1]) - 1));
@@ -292,10 +387,165 @@ public class GameLoader {
                 throw new FileFormatException();
             }
         }
+        /*Reject loops, which pathKeys could never walk to the end of*/
+        checkCycles(elements, true);
+        checkCycles(elements, false);
         /*Do pathKeys check here*/
         pathKeys(elements);
     }
 
+    /**
+     * Helper Method:
+     * Checks that following links in one direction, through every input or output of a
+     * Junction, never leads back to a node already on the way. Following outputs, it also
+     * checks that every Receiver a Producer can reach, through any input of a Junction, has
+     * the Producer's key, which pathKeys only checks along the first input
+     *
+     * @param elements grid components that are on grid
+     * @param forward true to follow outputs, false to follow inputs
+     * @throws FileFormatException if the links form a cycle, or a Producer reaches a Receiver
+     * with a different key
+     */
+    private static void checkCycles(List<Object> elements, boolean forward)
+            throws FileFormatException {
+        Map<Transport, Boolean> finished = new IdentityHashMap<>();
+        /* keys of the Receivers reachable from each finished node, when following outputs */
+        Map<Transport, Set<Item>> keys = new IdentityHashMap<>();
+        Deque<Transport> stack = new ArrayDeque<>();
+        Deque<Iterator<Path>> links = new ArrayDeque<>();
+        for (Object element : elements) {
+            Transport start = (Transport) element;
+            if (finished.containsKey(start)) {
+                continue;
+            }
+            /* a node is mapped to false while on the way, and to true once finished */
+            finished.put(start, false);
+            stack.push(start);
+            links.push(linked(start, forward).iterator());
+            while (!stack.isEmpty()) {
+                if (!links.peek().hasNext()) {
+                    Transport done = stack.pop();
+                    finished.put(done, true);
+                    links.pop();
+                    if (forward) {
+                        downstreamKeys(done, keys);
+                    }
+                    continue;
+                }
+                Transport node = links.peek().next().getNode();
+                Boolean done = finished.get(node);
+                if (done == null) {
+                    finished.put(node, false);
+                    stack.push(node);
+                    links.push(linked(node, forward).iterator());
+                } else if (!done) {
+                    throw new FileFormatException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Works out the keys of the Receivers reachable from a node whose outputs have all been
+     * finished, and checks them against the node's key if it is a Producer
+     *
+     * @param node the node just finished
+     * @param keys keys of the Receivers reachable from each finished node
+     * @throws FileFormatException if node is a Producer that reaches a Receiver with a
+     * different key
+     */
+    private static void downstreamKeys(Transport node, Map<Transport, Set<Item>> keys)
+            throws FileFormatException {
+        Set<Item> reached;
+        if (node instanceof Receiver receiver) {
+            reached = Collections.singleton(receiver.getKey());
+        } else {
+            List<Path> outputs = linked(node, true);
+            if (outputs.size() == 1) {
+                /* a single output shares its set rather than copying it */
+                reached = keys.get(outputs.get(0).getNode());
+            } else {
+                reached = new HashSet<>();
+                for (Path output : outputs) {
+                    reached.addAll(keys.get(output.getNode()));
+                }
+            }
+        }
+        keys.put(node, reached);
+        if (node instanceof Producer producer) {
+            for (Item key : reached) {
+                if (!Objects.equals(key, producer.getKey())) {
+                    throw new FileFormatException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the paths a node links to in one direction
+     *
+     * @param node the node whose links are wanted
+     * @param forward true for its outputs, false for its inputs
+     * @return every output or input of a Junction, otherwise the single next or previous
+     * path, if any
+     */
+    private static List<Path> linked(Transport node, boolean forward) {
+        if (node instanceof Junction junction) {
+            return forward ? junction.getOutputs() : junction.getInputs();
+        }
+        Path link = forward ? node.getPath().getNext() : node.getPath().getPrevious();
+        return link == null ? List.of() : List.of(link);
+    }
+
+    /**
+     * Helper Method:
+     * Links a Junction to every input and output listed on its linking line, and each of them
+     * back to the Junction
+     *
+     * @param junction the Junction being linked
+     * @param beltNext the text line split at the comma
+     * @param current first part of the text line split at the dash
+     * @param elements grid components that are on grid
+     * @param elementsPath path of the grid components that are on grid
+     * @throws FileFormatException if a listed node cannot be linked to a Junction that way
+     */
+    private static void junctionLinks(Junction junction, String[] beltNext, String[] current,
+                                      List<Object> elements, List<Path> elementsPath)
+            throws FileFormatException {
+        try {
+            if (current.length == 2) {
+                for (String id : current[1].split(";")) {
+                    Object input = elements.get(Integer.parseInt(id) - 1);
+                    junction.addInput(elementsPath.get(Integer.parseInt(id) - 1));
+                    if (input instanceof Junction other) {
+                        other.addOutput(junction.getPath());
+                    } else if (input instanceof Belt || input instanceof Producer) {
+                        ((Transport) input).setOutput(junction.getPath());
+                    } else {
+                        throw new FileFormatException();
+                    }
+                }
+            }
+            if (beltNext.length == 2 && !(beltNext[1].isEmpty())) {
+                for (String id : beltNext[1].split(";")) {
+                    Object output = elements.get(Integer.parseInt(id) - 1);
+                    junction.addOutput(elementsPath.get(Integer.parseInt(id) - 1));
+                    if (output instanceof Junction other) {
+                        other.addInput(junction.getPath());
+                    } else if (output instanceof Belt || output instanceof Receiver) {
+                        ((Transport) output).setInput(junction.getPath());
+                    } else {
+                        throw new FileFormatException();
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new FileFormatException();
+        }
+    }
+
     /**
      * Helper Method:
      * Checks to see if splitter is there
@@ -323,7 +573,7 @@ public class GameLoader {
      */
     private static void beltReceiverHelper(String[] current, List<Object> elements,
                                            List<Path> elementsPath) {
-        if (elements.get(Integer.parseInt(current[1]) - 1).getClass() == Belt.class) {
+        if (elements.get(Integer.parseInt(current[1]) - 1) instanceof Belt) {
             ((Belt) elements.get(Integer.parseInt(current[1]) - 1)).setOutput(
                     elementsPath.get(Integer.parseInt(current[0]) - 1));
 
@@ -331,6 +581,8 @@ public class GameLoader {
                 .get(Integer.parseInt(current[1]) - 1).getClass() == Producer.class) {
             ((Producer) elements.get(Integer.parseInt(current[1]) - 1)).setOutput(
                     elementsPath.get(Integer.parseInt(current[0]) - 1));
+        } else if (elements.get(Integer.parseInt(current[1]) - 1) instanceof Junction junction) {
+            junction.addOutput(elementsPath.get(Integer.parseInt(current[0]) - 1));
         }
     }
 
@@ -345,7 +597,7 @@ public class GameLoader {
      */
     private static void beltConnectionHelper(String[] beltNext, String[] current,
                                              List<Object> elements, List<Path> elementsPath) {
-        if (elements.get(Integer.parseInt(beltNext[1]) - 1).getClass() == Belt.class) {
+        if (elements.get(Integer.parseInt(beltNext[1]) - 1) instanceof Belt) {
             ((Belt) elements.get(Integer.parseInt(beltNext[1]) - 1)).setInput(
                     elementsPath.get(Integer.parseInt(current[0]) - 1));
 
@@ -353,6 +605,8 @@ public class GameLoader {
                 .get(Integer.parseInt(beltNext[1]) - 1).getClass() == Receiver.class) {
             ((Receiver) elements.get(Integer.parseInt(beltNext[1]) - 1)).setInput(
                     elementsPath.get(Integer.parseInt(current[0]) - 1));
+        } else if (elements.get(Integer.parseInt(beltNext[1]) - 1) instanceof Junction junction) {
+            junction.addInput(elementsPath.get(Integer.parseInt(current[0]) - 1));
         }
     }
 
@@ -377,7 +631,7 @@ public class GameLoader {
                     throw new FileFormatException();
                 }
             }
-            if (element.getClass() == Belt.class) {
+            if (element instanceof Belt) {
                 if (!(((Belt) element).getPath().head().getNode() instanceof Producer)
                         || !(((Belt) element).getPath().tail().getNode() instanceof Receiver)) {
                     throw new FileFormatException();
@@ -1,10 +1,11 @@
 package lms.logistics;
 
-import java.util.Objects;
-
 /**
  * Class to manage the name of an Item object. Provides implementations for equals, hashcode,
  * and toString.
+ * <p>
+ * Items created through {@link ItemRegistry#intern(String)} also carry a dense int id, which
+ * makes comparing two interned Items a single int compare.
  */
 public class Item {
 
@@ -13,6 +14,11 @@ public class Item {
      */
     private String name;
 
+    /**
+     * id given by the ItemRegistry, or 0 if this Item was not interned.
+     */
+    private final int id;
+
     /**
      *The constructor to instantiate an Item
      *
@@ -20,13 +26,34 @@ public class Item {
      * @throws IllegalArgumentException if the item name is null or empty string
      */
     public Item(String name) throws IllegalArgumentException {
+        this(name, 0);
+    }
+
+    /**
+     * The constructor used by the ItemRegistry to create a canonical Item.
+     *
+     * @param name String name of an Item object.
+     * @param id the registry id, or 0 for none
+     * @throws IllegalArgumentException if the item name is null or empty string
+     */
+    Item(String name, int id) throws IllegalArgumentException {
         if (name == null || name.isEmpty()) {
             throw new IllegalArgumentException();
         } else {
             this.name = name;
+            this.id = id;
         }
     }
 
+    /**
+     * Accessor method for the registry id of this Item.
+     *
+     * @return the id given by the ItemRegistry, or 0 if this Item was not interned
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Default and expected implementation specific to the needs of the comparison requirements.
      * Indicates whether some other object is "equal to" this one. This implementation of equals
@@ -35,6 +62,8 @@ public class Item {
      * same values (as determined by the equals method of each property), then they are considered
      * equal. Note that the comparison is symmetric, meaning that a.equals(b) will return true if
      * and only if b.equals(a) returns true for any non-null object reference b.
+     * <p>
+     * Two interned Items are compared by id; otherwise the names are compared.
      *
      * @param o the object to compare for equality
      * @return true if the given object is equal to this object; false otherwise
@@ -42,13 +71,16 @@ public class Item {
     @Override
     public boolean equals(Object o) {
 
-        if (o == null) {
-            return false;
-        } else if (this.getClass().equals(o.getClass())) {
-            return (this.hashCode() == o.hashCode());
-        } else {
+        if (this == o) {
+            return true;
+        } else if (o == null || !this.getClass().equals(o.getClass())) {
             return false;
         }
+        Item other = (Item) o;
+        if (this.id != 0 && other.id != 0) {
+            return this.id == other.id;
+        }
+        return this.name.equals(other.name);
     }
 
     /**
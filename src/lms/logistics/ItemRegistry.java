@@ -0,0 +1,104 @@
+package lms.logistics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns Items by name. Each distinct name is given one canonical Item with a dense int id,
+ * starting at 1, so that 0 can stand for "no item" in int based state. Interned Items compare
+ * equal by id, and the id can index per-item arrays of statistics.
+ * <p>
+ * Example usage:
+ * <p>
+ * Item key = ItemRegistry.intern("gear");
+ * <p>
+ * ItemRegistry.get(key.getId()) == key
+ */
+public final class ItemRegistry {
+
+    /**
+     * Canonical Item for each interned name.
+     */
+    private static final Map<String, Item> BY_NAME = new HashMap<>();
+
+    /**
+     * Canonical Items indexed by id, with null at index 0. Replaced, never modified, when it
+     * grows, so it can be read without locking.
+     */
+    private static volatile Item[] byId = new Item[1];
+
+    /**
+     * Number of ids handed out so far, plus one for the unused id 0.
+     */
+    private static int count = 1;
+
+    /**
+     * Not instantiable.
+     */
+    private ItemRegistry() {}
+
+    /**
+     * Returns the canonical Item with the given name, creating and registering it if this is
+     * the first time the name has been seen.
+     *
+     * @param name name of the Item
+     * @return the canonical Item for the name
+     * @throws IllegalArgumentException if the name is null or empty string
+     */
+    public static synchronized Item intern(String name) throws IllegalArgumentException {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        Item item = BY_NAME.get(name);
+        if (item == null) {
+            item = new Item(name, count);
+            Item[] items = byId;
+            if (count == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+            items[count++] = item;
+            byId = items;
+            BY_NAME.put(name, item);
+        }
+        return item;
+    }
+
+    /**
+     * Returns the canonical form of an Item, interning its name if needed.
+     *
+     * @param item the Item, may be null
+     * @return the canonical Item with the same name, or null if item is null
+     */
+    public static Item intern(Item item) {
+        if (item == null || item.getId() != 0) {
+            return item;
+        }
+        return intern(item.toString());
+    }
+
+    /**
+     * Returns the canonical Item with the given id.
+     *
+     * @param id id of the Item, or 0
+     * @return the Item with that id, or null if id is 0
+     * @throws IndexOutOfBoundsException if no Item has been given that id
+     */
+    public static Item get(int id) throws IndexOutOfBoundsException {
+        Item[] items = byId;
+        if (id < 0 || id >= items.length || (id > 0 && items[id] == null)) {
+            throw new IndexOutOfBoundsException(id);
+        }
+        return items[id];
+    }
+
+    /**
+     * Returns one more than the highest id handed out so far, which is the length needed for
+     * an array indexed by item id.
+     *
+     * @return the id bound
+     */
+    public static synchronized int size() {
+        return count;
+    }
+}
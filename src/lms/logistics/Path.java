@@ -30,7 +30,31 @@ public class Path {
      */
     private Path next;
 
+    /**
+     * Counts every change made to the links between Path nodes, so that anything compiled from
+     * the links can tell when it is out of date.
+     */
+    private static int topologyVersion = 0;
+
+    /**
+     * Cached head of this Path, valid while headVersion matches the topology version.
+     */
+    private Path head;
+
+    /**
+     * Topology version the cached head was found at, or -1 if it has not been found yet.
+     */
+    private int headVersion = -1;
+
+    /**
+     * Cached tail of this Path, valid while tailVersion matches the topology version.
+     */
+    private Path tail;
 
+    /**
+     * Topology version the cached tail was found at, or -1 if it has not been found yet.
+     */
+    private int tailVersion = -1;
 
     /**
      * This method takes a Transport Consumer,
@@ -117,29 +141,47 @@ public class Path {
     /**
      * Returns the tail of this Path, which is the last element in the path.
      * If this Path is the last element, it is returned as is.
+     * <p>
+     * The tail is cached on every Path walked past to find it, so repeated calls take constant
+     * time until the links change.
      *
      * @return the tail of this Path.
      */
     public Path tail() {
-        Path forward = this;
-        while (forward.next != null) {
-            forward = forward.next;
+        if (this.tailVersion != topologyVersion) {
+            Path forward = this;
+            while (forward.next != null) {
+                forward = forward.next;
+            }
+            for (Path path = this; path != null; path = path.next) {
+                path.tail = forward;
+                path.tailVersion = topologyVersion;
+            }
         }
-        return forward;
+        return this.tail;
     }
 
     /**
      * Returns the head of this Path, which is the first element in the path.
      * If this Path is the first element, it is returned as is.
+     * <p>
+     * The head is cached on every Path walked past to find it, so repeated calls take constant
+     * time until the links change.
      *
      * @return the head of this Path.
      */
     public Path head() {
-        Path before = this;
-        while (before.previous != null) {
-            before = before.previous;
+        if (this.headVersion != topologyVersion) {
+            Path before = this;
+            while (before.previous != null) {
+                before = before.previous;
+            }
+            for (Path path = this; path != null; path = path.previous) {
+                path.head = before;
+                path.headVersion = topologyVersion;
+            }
         }
-        return before;
+        return this.head;
     }
 
     /**
@@ -148,9 +190,6 @@ public class Path {
      * @return the previous Path object in the chain, or null if this is the first Path object
      */
     public Path getPrevious() {
-        if (this.equals(this.head())) {
-            return null;
-        }
         return this.previous;
     }
 
@@ -160,12 +199,19 @@ public class Path {
      * @return the next Path object in the chain, or null if this is the last Path object
      */
     public Path getNext() {
-        if (this.equals(this.tail())) {
-            return null;
-        }
         return this.next;
     }
 
+    /**
+     * Returns a counter that changes whenever setNext or setPrevious changes a link on any Path.
+     * Two equal values mean no links have been changed in between.
+     *
+     * @return the current topology version
+     */
+    public static int getTopologyVersion() {
+        return topologyVersion;
+    }
+
     /**
      * Sets the next path for this path.
      *
@@ -174,6 +220,7 @@ public class Path {
     public void setNext(Path path) {
         if (!(this.node instanceof Receiver)) {
             this.next = path;
+            topologyVersion++;
         }
 
     }
@@ -187,6 +234,7 @@ public class Path {
     public void setPrevious(Path path) {
         if (!(this.node instanceof Producer)) {
             this.previous = path;
+            topologyVersion++;
         }
     }
 
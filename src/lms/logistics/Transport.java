@@ -105,6 +105,71 @@ public abstract class Transport implements Tickable, GridComponent {
         this.inventory = inventory;
     }
 
+    /**
+     * Checks whether this node has room for one more item. A node has room only when its
+     * inventory is empty; nodes that can hold more than one item override this.
+     *
+     * @return true if offer would take an item
+     */
+    public boolean canAccept() {
+        return inventory == null;
+    }
+
+    /**
+     * Checks whether this node will move an item forward on its next tick, given room for it.
+     *
+     * @return true if the node holds an item to pass on
+     */
+    public boolean isReady() {
+        return inventory != null;
+    }
+
+    /**
+     * Offers an item to this node. A node takes the item only when it has room for it.
+     *
+     * @param item the item being moved into this node
+     * @return true if the item was taken, false if the node is full
+     */
+    public boolean offer(Item item) {
+        if (canAccept()) {
+            inventory = item;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Offers an item to this node from the node before it, as that node does when it ticks.
+     * Nodes with several inputs use the sender to choose between them; others ignore it.
+     *
+     * @param from the node the item comes from
+     * @param item the item being moved into this node
+     * @return true if the item was taken, false if the node is full or refuses the sender
+     */
+    public boolean offer(Transport from, Item item) {
+        return offer(item);
+    }
+
+    /**
+     * Returns a copy of everything a tick can change on this node, for restoreState to put
+     * back, so that a step that fails part way can be undone. Subclasses that keep more than
+     * an inventory override both methods.
+     *
+     * @return the state of this node
+     */
+    public Object saveState() {
+        return inventory;
+    }
+
+    /**
+     * Puts back the state returned by an earlier call to saveState on this node.
+     *
+     * @param state the state to put back
+     */
+    public void restoreState(Object state) {
+        inventory = (Item) state;
+    }
+
     /**
      * get the Path object, containing node, next and previous pathways
      * @return Path
@@ -132,9 +197,8 @@ public abstract class Transport implements Tickable, GridComponent {
 
             Transport nextNode = path.getNext().getNode(); /* if there's a next item and */
 
-            if (nextNode.inventory == null) {         /* its inventory is empty */
-                nextNode.inventory = inventory;       /* transfer inventory to the next inventory */
-                inventory = null;                     /* and remove inventory from self */
+            if (nextNode.offer(this, inventory)) {    /* it has room and takes the inventory */
+                inventory = null;                     /* so remove inventory from self */
             }
         }
     }
@@ -0,0 +1,100 @@
+package lms.logistics.belts;
+
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+
+/**
+ * A faster Belt, which moves its item up to a fixed number of free cells forward in a single
+ * tick instead of one. The cells are found in one walk along the output Path: the item passes
+ * over empty single item belts and stops at the last free cell within reach, or at the first
+ * node it cannot pass through, such as a Receiver or a MultiSlotBelt.
+ * <p>
+ * Since lines are ticked from the tail, every node ahead has already ticked when an
+ * ExpressBelt does, so an item never moves more than once per tick. Its save file encoding is
+ * "e" followed by its speed, e.g. "e3".
+ */
+public class ExpressBelt extends Belt {
+
+    /**
+     * Largest number of cells a belt can be made to move an item in one tick.
+     */
+    public static final int MAX_SPEED = 1 << 10;
+
+    /**
+     * Maximum number of cells an item moves in one tick.
+     */
+    private final int speed;
+
+    /**
+     * Constructs a new ExpressBelt.
+     *
+     * @param id the integer value to be provided to the superclass constructor
+     * @param speed the maximum number of cells an item moves in one tick
+     * @throws IllegalArgumentException if speed is less than 1 or more than MAX_SPEED
+     */
+    public ExpressBelt(int id, int speed) throws IllegalArgumentException {
+        super(id);
+        if (speed < 1 || speed > MAX_SPEED) {
+            throw new IllegalArgumentException();
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the maximum number of cells an item on this belt moves in one tick.
+     *
+     * @return the speed
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "e" + speed;
+    }
+
+    /**
+     * Moves the item on this belt to the furthest free cell within speed cells.
+     */
+    @Override
+    public void tick() {
+        Item item = getInventory();
+        if (item == null) {
+            return;
+        }
+        Transport from = this;
+        Transport target = null;
+        Path path = getPath().getNext();
+        for (int hop = 0; hop < speed && path != null; hop++) {
+            Transport node = path.getNode();
+            if (!node.canAccept()) {
+                break;
+            }
+            if (target != null) {
+                from = target;
+            }
+            target = node;
+            if (!passesThrough(node)) {
+                break;
+            }
+            path = node.getPath().getNext();
+        }
+        if (target != null && target.offer(from, item)) {
+            setInventory(null);
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether an item can pass over a node to the one after it, which is only the
+     * case for belts holding a single item.
+     *
+     * @param node a node with room for the item
+     * @return true if node is a Belt that is not a MultiSlotBelt
+     */
+    private static boolean passesThrough(Transport node) {
+        return node instanceof Belt && !(node instanceof MultiSlotBelt);
+    }
+}
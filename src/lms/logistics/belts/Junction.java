@@ -0,0 +1,232 @@
+package lms.logistics.belts;
+
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node joining several production line branches, holding one item like a Belt. A Junction
+ * with several outputs is a splitter and one with several inputs is a merger; it may be both.
+ * <p>
+ * Its own Path keeps the first input and output as its previous and next links, so that code
+ * following a single chain still finds a way through it. The full lists are kept by the
+ * Junction and read with {@link #getInputs()} and {@link #getOutputs()}.
+ * <p>
+ * Both sides are served in round robin order:
+ * <ul>
+ *     <li>on its tick, a held item is offered to the outputs in turn, starting after the
+ *     output that took the last item, and goes to the first that takes it</li>
+ *     <li>when it is empty after that, the Junction grants its slot to the next input, in
+ *     turn, that {@link Transport#isReady() is ready}, and only that input may offer it an
+ *     item until the Junction next ticks</li>
+ * </ul>
+ * This needs the Junction to tick after its outputs and before its inputs, which is the order
+ * LineSchedule gives grids holding junctions. Its save file encoding is "j".
+ */
+public class Junction extends Transport {
+
+    /**
+     * Paths of the nodes feeding this Junction.
+     */
+    private final List<Path> inputs;
+
+    /**
+     * Paths of the nodes this Junction feeds.
+     */
+    private final List<Path> outputs;
+
+    /**
+     * Index of the input to consider first for the next grant.
+     */
+    private int nextInput;
+
+    /**
+     * Index of the output to offer the next item to first.
+     */
+    private int nextOutput;
+
+    /**
+     * Input granted the slot on the last tick, or null if any input may fill it.
+     */
+    private Transport granted;
+
+    /**
+     * Constructs a new, unlinked Junction.
+     *
+     * @param id the integer value to be provided to the superclass constructor
+     */
+    public Junction(int id) {
+        super(id);
+        this.inputs = new ArrayList<>();
+        this.outputs = new ArrayList<>();
+        this.nextInput = 0;
+        this.nextOutput = 0;
+        this.granted = null;
+    }
+
+    @Override
+    public String getEncoding() {
+        return "j";
+    }
+
+    /**
+     * Adds a node feeding this Junction. The first input added becomes the previous link of
+     * the Junction's Path. Adding an input twice has no effect.
+     *
+     * @param input the Path of the feeding node
+     * @throws IllegalArgumentException if input is null
+     */
+    public void addInput(Path input) throws IllegalArgumentException {
+        if (input == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!inputs.contains(input)) {
+            inputs.add(input);
+            getPath().setPrevious(inputs.get(0));
+        }
+    }
+
+    /**
+     * Adds a node this Junction feeds. The first output added becomes the next link of the
+     * Junction's Path. Adding an output twice has no effect.
+     *
+     * @param output the Path of the fed node
+     * @throws IllegalArgumentException if output is null
+     */
+    public void addOutput(Path output) throws IllegalArgumentException {
+        if (output == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!outputs.contains(output)) {
+            outputs.add(output);
+            getPath().setNext(outputs.get(0));
+        }
+    }
+
+    /**
+     * Sets the only input of this Junction, replacing any others.
+     *
+     * @param input the Path of the feeding node, or null for none
+     */
+    @Override
+    public void setInput(Path input) {
+        inputs.clear();
+        if (input == null) {
+            getPath().setPrevious(null);
+        } else {
+            addInput(input);
+        }
+    }
+
+    /**
+     * Sets the only output of this Junction, replacing any others.
+     *
+     * @param output the Path of the fed node, or null for none
+     */
+    @Override
+    public void setOutput(Path output) {
+        outputs.clear();
+        if (output == null) {
+            getPath().setNext(null);
+        } else {
+            addOutput(output);
+        }
+    }
+
+    /**
+     * Returns the Paths of the nodes feeding this Junction, in round robin order.
+     *
+     * @return an unmodifiable list of the inputs
+     */
+    public List<Path> getInputs() {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    /**
+     * Returns the Paths of the nodes this Junction feeds, in round robin order.
+     *
+     * @return an unmodifiable list of the outputs
+     */
+    public List<Path> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    /**
+     * Takes an item if the slot is empty and either granted to the sender or not granted.
+     *
+     * @param from the node the item comes from
+     * @param item the item being moved into this Junction
+     * @return true if the item was taken
+     */
+    @Override
+    public boolean offer(Transport from, Item item) {
+        if (granted != null && granted != from) {
+            return false;
+        }
+        return super.offer(item);
+    }
+
+    /**
+     * Takes an item from an unknown sender, only if the slot is empty and not granted.
+     *
+     * @param item the item being moved into this Junction
+     * @return true if the item was taken
+     */
+    @Override
+    public boolean offer(Item item) {
+        if (granted != null) {
+            return false;
+        }
+        return super.offer(item);
+    }
+
+    @Override
+    public Object saveState() {
+        return new Object[] {super.saveState(), nextInput, nextOutput, granted};
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        Object[] saved = (Object[]) state;
+        super.restoreState(saved[0]);
+        nextInput = (Integer) saved[1];
+        nextOutput = (Integer) saved[2];
+        granted = (Transport) saved[3];
+    }
+
+    /**
+     * Passes the held item to the next output that takes it, then grants the empty slot to
+     * the next ready input.
+     */
+    @Override
+    public void tick() {
+        granted = null;
+        Item item = getInventory();
+        int count = outputs.size();
+        for (int k = 0; item != null && k < count; k++) {
+            int o = (nextOutput + k) % count;
+            if (outputs.get(o).getNode().offer(this, item)) {
+                setInventory(null);
+                nextOutput = (o + 1) % count;
+                item = null;
+            }
+        }
+        if (item != null) {
+            return;
+        }
+        count = inputs.size();
+        for (int k = 0; k < count; k++) {
+            int i = (nextInput + k) % count;
+            Transport input = inputs.get(i).getNode();
+            if (input.isReady()) {
+                granted = input;
+                nextInput = (i + 1) % count;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package lms.logistics.belts;
+
+import lms.logistics.Item;
+import lms.logistics.Transport;
+
+/**
+ * A Belt that holds up to a fixed number of items instead of one, so that a long, dense
+ * stretch of conveyor can be modelled by a single node. The items are kept in a ring buffer in
+ * the order they arrived.
+ * <p>
+ * Each tick the belt hands items from the front of the queue to the node it outputs to, for
+ * as long as that node takes them, and it takes items offered to it until it is full. Its
+ * save file encoding is "m" followed by its capacity, e.g. "m8".
+ */
+public class MultiSlotBelt extends Belt {
+
+    /**
+     * Largest number of items a belt can be made to hold.
+     */
+    public static final int MAX_CAPACITY = 1 << 16;
+
+    /**
+     * Items on the belt, in a ring buffer starting at first.
+     */
+    private final Item[] slots;
+
+    /**
+     * Slot of the item that arrived first.
+     */
+    private int first;
+
+    /**
+     * Number of items on the belt.
+     */
+    private int size;
+
+    /**
+     * Constructs a new, empty MultiSlotBelt.
+     *
+     * @param id the integer value to be provided to the superclass constructor
+     * @param capacity the number of items the belt can hold
+     * @throws IllegalArgumentException if capacity is less than 1 or more than MAX_CAPACITY
+     */
+    public MultiSlotBelt(int id, int capacity) throws IllegalArgumentException {
+        super(id);
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException();
+        }
+        this.slots = new Item[capacity];
+        this.first = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of items this belt can hold.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the number of items on this belt.
+     *
+     * @return number of items, from 0 to the capacity
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns an item on this belt.
+     *
+     * @param index position of the item, from 0 for the one that arrived first
+     * @return the item
+     * @throws IndexOutOfBoundsException if index is not between 0 and getSize() - 1
+     */
+    public Item getItem(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return slots[(first + index) % slots.length];
+    }
+
+    /**
+     * Returns the item that will leave this belt next.
+     *
+     * @return the item that arrived first, or null if the belt is empty
+     */
+    @Override
+    public Item getInventory() {
+        return size == 0 ? null : slots[first];
+    }
+
+    /**
+     * Empties this belt and, if item is not null, puts that single item on it.
+     *
+     * @param inventory the only item to hold, or null to empty the belt
+     */
+    @Override
+    public void setInventory(Item inventory) {
+        while (size > 0) {
+            poll();
+        }
+        if (inventory != null) {
+            offer(inventory);
+        }
+    }
+
+    /**
+     * Checks whether this belt holds an item to pass on.
+     *
+     * @return true if the belt is not empty
+     */
+    @Override
+    public boolean isReady() {
+        return size > 0;
+    }
+
+    /**
+     * Checks whether this belt has room for one more item.
+     *
+     * @return true if the belt is not full
+     */
+    @Override
+    public boolean canAccept() {
+        return size < slots.length;
+    }
+
+    /**
+     * Puts an item at the back of the queue, unless the belt is full.
+     *
+     * @param item the item being moved onto this belt
+     * @return true if the item was taken, false if the belt is full
+     */
+    @Override
+    public boolean offer(Item item) {
+        if (!canAccept()) {
+            return false;
+        }
+        slots[(first + size) % slots.length] = item;
+        size++;
+        return true;
+    }
+
+    /**
+     * Helper Method:
+     * Removes the item at the front of the queue.
+     */
+    private void poll() {
+        slots[first] = null;
+        first = (first + 1) % slots.length;
+        size--;
+    }
+
+    @Override
+    public Object saveState() {
+        return new Object[] {super.saveState(), slots.clone(), first, size};
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        Object[] saved = (Object[]) state;
+        super.restoreState(saved[0]);
+        Item[] items = (Item[]) saved[1];
+        System.arraycopy(items, 0, slots, 0, slots.length);
+        first = (Integer) saved[2];
+        size = (Integer) saved[3];
+    }
+
+    @Override
+    public String getEncoding() {
+        return "m" + slots.length;
+    }
+
+    /**
+     * Hands items from the front of the queue to the next node until it stops taking them or
+     * the belt is empty.
+     */
+    @Override
+    public void tick() {
+        if (getPath().getNext() == null) {
+            return;
+        }
+        Transport nextNode = getPath().getNext().getNode();
+        while (size > 0 && nextNode.offer(this, slots[first])) {
+            poll();
+        }
+    }
+}
@@ -8,7 +8,7 @@ import lms.logistics.Path;
  * The Producer class represents a node in the fictional factory/machine
  * that is responsible for producing new items.
  * This class inherits the Tickable interface and ensures that on each second tick,
- * a new item is created.
+ * a new item is created, or at the ProductionRate it was given.
  * <p>
  * The Producer class is designed to work in conjunction with the Receiver node in
  * the factory/machine to achieve the desired production outcome.
@@ -32,11 +32,95 @@ import lms.logistics.Path;
  */
 public class Producer extends Container {
 
+    /**
+     * Position of the last tick in the production cycle; an item is produced on ticks that
+     * end on an emitting position. For the default rate this is the parity of the number of
+     * ticks seen so far.
+     */
     private int counter;
 
+    /**
+     * The rate this Producer makes items at.
+     */
+    private final ProductionRate rate;
+
+    /**
+     * Position of the cycle after each position, from the rate.
+     */
+    private final int[] successor;
+
+    /**
+     * Whether each position of the cycle makes an item, from the rate.
+     */
+    private final boolean[] emits;
+
     public Producer(int id, Item key) {
+        this(id, key, ProductionRate.DEFAULT);
+    }
+
+    /**
+     * Constructs a new Producer making items at the given rate.
+     *
+     * @param id the ID of the producer
+     * @param key the item it makes
+     * @param rate how often it makes an item
+     * @throws IllegalArgumentException if key or rate is null
+     */
+    public Producer(int id, Item key, ProductionRate rate) throws IllegalArgumentException {
         super(id, key);
-        counter = 0;
+        if (rate == null) {
+            throw new IllegalArgumentException();
+        }
+        this.rate = rate;
+        this.successor = rate.successor();
+        this.emits = rate.emits();
+        this.counter = rate.getPhase();
+    }
+
+    /**
+     * Accessor method for the rate this Producer makes items at.
+     *
+     * @return the production rate
+     */
+    public ProductionRate getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the position of the last tick in this Producer's production cycle. For the
+     * default rate this is the parity of the number of ticks seen, and the next tick produces
+     * an item when it is 0.
+     *
+     * @return a position from 0 to the rate's period - 1
+     */
+    public int getCounter() {
+        return counter;
+    }
+
+    /**
+     * Sets the position of this Producer in its production cycle, so that an engine that
+     * ticks its own copy of the factory can write its state back.
+     *
+     * @param counter a position from 0 to the rate's period - 1
+     * @throws IllegalArgumentException if counter is not a position of the cycle
+     */
+    public void setCounter(int counter) throws IllegalArgumentException {
+        if (counter < 0 || counter >= successor.length) {
+            throw new IllegalArgumentException();
+        }
+        this.counter = counter;
+    }
+
+    @Override
+    public Object saveState() {
+        return new Object[] {super.saveState(), counter};
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        Object[] saved = (Object[]) state;
+        super.restoreState(saved[0]);
+        counter = (Integer) saved[1];
     }
 
     @Override
@@ -44,6 +128,16 @@ public class Producer extends Container {
         return "p";
     }
 
+    /**
+     * Checks whether this Producer makes an item on its next tick.
+     *
+     * @return true if the next tick is a producing tick
+     */
+    @Override
+    public boolean isReady() {
+        return emits[successor[counter]];
+    }
+
     @Override
     public void setInventory(Item inventory) {
         throw new UnsupportedActionException();
@@ -56,7 +150,8 @@ public class Producer extends Container {
 
     @Override
     public void tick() {
-        if (++counter % 2 == 1) {
+        counter = successor[counter]; // a position in the cycle, so it never overflows
+        if (emits[counter]) {
             super.tick();
             super.setInventory(getKey());
         }
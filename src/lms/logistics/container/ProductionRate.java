@@ -0,0 +1,169 @@
+package lms.logistics.container;
+
+/**
+ * How often a Producer makes an item, as a cycle of period ticks. Each tick moves the
+ * Producer's counter one position along the cycle, and the pattern says which positions make
+ * an item. The phase is the position the counter starts at.
+ * <p>
+ * Without a pattern, only the last position of the cycle makes an item, so a Producer makes
+ * one item every period ticks. The default rate has period 2 and phase 0, which makes an item
+ * on every odd tick.
+ * <p>
+ * The cycle is worked out once, into a table of the position after each position and a table
+ * of the positions that make an item, so a tick is two array reads.
+ */
+public class ProductionRate {
+
+    /**
+     * Longest cycle a rate can have, which bounds the size of its tables.
+     */
+    public static final int MAX_PERIOD = 1 << 16;
+
+    /**
+     * The rate of one item every two ticks, starting on the first.
+     */
+    public static final ProductionRate DEFAULT = new ProductionRate(2, 0);
+
+    /**
+     * Position after each position of the cycle.
+     */
+    private final int[] successor;
+
+    /**
+     * Whether each position of the cycle makes an item.
+     */
+    private final boolean[] emits;
+
+    /**
+     * Position the counter starts at.
+     */
+    private final int phase;
+
+    /**
+     * Constructs a rate of one item every period ticks.
+     *
+     * @param period number of ticks in the cycle
+     * @param phase position of the cycle the counter starts at
+     * @throws IllegalArgumentException if period is not between 1 and MAX_PERIOD, or phase
+     * is not a position of the cycle
+     */
+    public ProductionRate(int period, int phase) throws IllegalArgumentException {
+        this(period, phase, null);
+    }
+
+    /**
+     * Constructs a rate following a burst pattern.
+     *
+     * @param period number of ticks in the cycle
+     * @param phase position of the cycle the counter starts at
+     * @param pattern whether each position of the cycle makes an item, or null to make one
+     * on the last position only
+     * @throws IllegalArgumentException if period is not between 1 and MAX_PERIOD, phase is
+     * not a position of the cycle, or the pattern is not period long
+     */
+    public ProductionRate(int period, int phase, boolean[] pattern)
+            throws IllegalArgumentException {
+        if (period < 1 || period > MAX_PERIOD || phase < 0 || phase >= period
+                || (pattern != null && pattern.length != period)) {
+            throw new IllegalArgumentException();
+        }
+        this.phase = phase;
+        this.successor = new int[period];
+        for (int position = 0; position < period; position++) {
+            successor[position] = position + 1 == period ? 0 : position + 1;
+        }
+        if (pattern == null) {
+            this.emits = new boolean[period];
+            emits[period - 1] = true;
+        } else {
+            this.emits = pattern.clone();
+        }
+    }
+
+    /**
+     * Reads a rate from its save file form: a period, then optionally a phase, then optionally
+     * a pattern of one '1' or '0' per position of the cycle, separated by spaces. For example
+     * "4 1 0110".
+     *
+     * @param encoding the rate's save file form
+     * @return the rate
+     * @throws IllegalArgumentException if encoding is not a valid rate
+     */
+    public static ProductionRate parse(String encoding) throws IllegalArgumentException {
+        String[] parts = encoding.trim().split(" +");
+        if (parts.length > 3) {
+            throw new IllegalArgumentException();
+        }
+        int period = Integer.parseInt(parts[0]);
+        int phase = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        boolean[] pattern = null;
+        if (parts.length > 2) {
+            if (!parts[2].matches("[01]+")) {
+                throw new IllegalArgumentException();
+            }
+            pattern = new boolean[parts[2].length()];
+            for (int position = 0; position < pattern.length; position++) {
+                pattern[position] = parts[2].charAt(position) == '1';
+            }
+        }
+        return new ProductionRate(period, phase, pattern);
+    }
+
+    /**
+     * Returns the number of ticks in the cycle.
+     *
+     * @return the period
+     */
+    public int getPeriod() {
+        return successor.length;
+    }
+
+    /**
+     * Returns the position of the cycle the counter starts at.
+     *
+     * @return the phase
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Checks whether a position of the cycle makes an item.
+     *
+     * @param position a position of the cycle
+     * @return true if a tick ending on that position makes an item
+     * @throws IndexOutOfBoundsException if position is not a position of the cycle
+     */
+    public boolean emitsAt(int position) throws IndexOutOfBoundsException {
+        return emits[position];
+    }
+
+    /**
+     * Checks whether this is the default rate, which the array based engines assume.
+     *
+     * @return true if the period is 2, the phase 0, and only position 1 makes an item
+     */
+    public boolean isDefault() {
+        return successor.length == 2 && phase == 0 && !emits[0] && emits[1];
+    }
+
+    /**
+     * Gives the Producer the table of the position after each position. It must not be
+     * modified.
+     *
+     * @return the successor table
+     */
+    int[] successor() {
+        return successor;
+    }
+
+    /**
+     * Gives the Producer the table of the positions that make an item. It must not be
+     * modified.
+     *
+     * @return the emission table
+     */
+    boolean[] emits() {
+        return emits;
+    }
+}
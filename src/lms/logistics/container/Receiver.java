@@ -37,6 +37,11 @@ import lms.logistics.Transport;
  */
 public class Receiver extends Container {
 
+    /**
+     * Number of items consumed by this Receiver.
+     */
+    private long delivered;
+
     /**
      * The Receiver class represents a receiver object that receives items
      * in a given inventory. This class has a constructor that takes an
@@ -59,6 +64,8 @@ public class Receiver extends Container {
      */
     public Receiver(int id, Item key) {
         super(id, key);
+        super.setInventory(null); // the key is only a starting inventory for a Producer
+        delivered = 0;
     }
 
     @Override
@@ -88,6 +95,61 @@ public class Receiver extends Container {
         return null; // always empty
     }
 
+    /**
+     * Returns the item handed to this Receiver that will be consumed on its next tick. Unlike
+     * getInventory, this exposes the Receiver's real state.
+     *
+     * @return the waiting Item, or null if there is none
+     */
+    public Item getPending() {
+        return super.getInventory();
+    }
+
+    /**
+     * Sets the item waiting to be consumed, so that an engine that ticks its own copy of the
+     * factory can write its state back.
+     *
+     * @param item the waiting Item, or null for none
+     */
+    public void setPending(Item item) {
+        super.setInventory(item);
+    }
+
+    /**
+     * Returns the number of items this Receiver has consumed.
+     *
+     * @return number of items delivered
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Sets the number of items this Receiver has consumed, so that an engine that ticks its own
+     * copy of the factory can write its state back.
+     *
+     * @param delivered number of items delivered
+     * @throws IllegalArgumentException if delivered is negative
+     */
+    public void setDelivered(long delivered) throws IllegalArgumentException {
+        if (delivered < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.delivered = delivered;
+    }
+
+    @Override
+    public Object saveState() {
+        return new Object[] {super.saveState(), delivered};
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        Object[] saved = (Object[]) state;
+        super.restoreState(saved[0]);
+        delivered = (Long) saved[1];
+    }
+
     /**
      * Rewrites the Transport implementation to throw
      * an unsupported exception if invoked
@@ -100,19 +162,32 @@ public class Receiver extends Container {
         throw new UnsupportedActionException();
     }
 
+    /**
+     * Checks whether this Receiver can consume the given item on a tick without failing.
+     *
+     * @param item the item to check, or null for none
+     * @return true if item is null or equal to this Receiver's key
+     */
+    public boolean accepts(Item item) {
+        return item == null || getKey().equals(item);
+    }
+
     /**
      * Checks to ensure that the value at this iteration is not null and the key
      * does not equal the inventory of the superclass.
      *
      * throws BadStateException, or nullifies the inventory of the superclass if
-     * no exception found
+     * no exception found, counting the consumed item as delivered
      */
     @Override
     public void tick() {
         Item inventory = super.getInventory();
-        if (inventory != null && !getKey().equals(inventory)) {
+        if (!accepts(inventory)) {
             throw new BadStateException("Receiver inventory != key value");
         }
+        if (inventory != null) {
+            delivered++;
+        }
         super.setInventory(null);
     }
 
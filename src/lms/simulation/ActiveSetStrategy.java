@@ -0,0 +1,104 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+
+/**
+ * A SegmentStrategy that only ticks the lines that still have work to do. Every line starts in
+ * the active set when the state is loaded. After each tick, a line that can no longer change
+ * is dropped from the set. That is a line with nothing in flight and no Producer, a line
+ * with no Receiver whose items are all backed up and whose Producer has no room left, or a
+ * line whose Receiver holds the wrong item.
+ * <p>
+ * Within an active line only the belts that hold an item are visited, so the cost of a tick
+ * grows with the number of items in flight and not with the size of the grid. A dropped line
+ * stays parked until the state is next loaded, which is the only way its Receiver could free
+ * up. The parity of a parked line's Producer keeps counting, and is worked out from the number
+ * of ticks it was parked for when the state is stored. A line parked on a fault would have
+ * faulted again on every one of those ticks instead, with its Producer stopped, so they are
+ * recorded as a single fault repeated that many times, as AnalyticStrategy does.
+ */
+public class ActiveSetStrategy extends SegmentStrategy {
+
+    /**
+     * Lines that still need ticking, in ascending order.
+     */
+    private final int[] active;
+
+    /**
+     * Number of entries used in active.
+     */
+    private int activeCount;
+
+    /**
+     * Tick each line was parked at, counted from the last load.
+     */
+    private final long[] parkedAt;
+
+    /**
+     * Constructs a new ActiveSetStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public ActiveSetStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        super(schedule, faults);
+        this.active = new int[segments.length];
+        this.parkedAt = new long[segments.length];
+    }
+
+    /**
+     * Returns the number of lines that were ticked on the last tick, or will be on the next.
+     *
+     * @return size of the active set
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    @Override
+    public void load() {
+        super.load();
+        activeCount = segments.length;
+        for (int l = 0; l < activeCount; l++) {
+            active[l] = l;
+        }
+    }
+
+    @Override
+    public void tick() {
+        ticks++;
+        int kept = 0;
+        for (int a = 0; a < activeCount; a++) {
+            int l = active[a];
+            if (tickLine(l)) {
+                active[kept++] = l;
+            } else {
+                parkedAt[l] = ticks;
+            }
+        }
+        activeCount = kept;
+    }
+
+    @Override
+    public void store() {
+        int a = 0;
+        for (int l = 0; l < segments.length; l++) {
+            if (a < activeCount && active[a] == l) {
+                a++;
+            } else if (isFaulted(l)) {
+                if (ticks > parkedAt[l]) {
+                    recordFault(l, parkedAt[l] + 1, ticks - parkedAt[l]);
+                }
+                parkedAt[l] = ticks;
+            } else if (producer[l] != -1) {
+                counter[l] = (int) ((counter[l] + ticks - parkedAt[l]) % 2);
+                parkedAt[l] = ticks;
+            }
+        }
+        super.store();
+    }
+}
@@ -0,0 +1,355 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+/**
+ * A TickStrategy that works out the state of each line after any number of ticks in closed
+ * form. {@link #advance(long)} takes time proportional to the length of the lines, not to the
+ * number of ticks.
+ * <p>
+ * A Producer emits on every tick its parity becomes 1. After n ticks it has emitted on the
+ * ticks t1, t1 + 2, ..., where t1 is 1 or 2 depending on its starting parity. From there:
+ * <ul>
+ *     <li>On a line ending in a Receiver every item moves one belt forward each tick. An item
+ *     on belt p reaches the Receiver on tick belts - p and is consumed on the tick after.
+ *     Every emission succeeds, and an item emitted on tick e reaches the Receiver on tick
+ *     e + belts. The first wrong item to be consumed freezes the line from that tick on, so
+ *     the line is worked out up to the tick before.</li>
+ *     <li>On a line with no Receiver the j-th item from the tail moves forward until it is
+ *     backed up on belt belts - 1 - j, and the Producer emits until every belt is full.</li>
+ * </ul>
+ * This covers the warm-up of an empty line, items already in flight, blocked Producers and
+ * faulty Receivers alike.
+ */
+public class AnalyticStrategy implements TickStrategy {
+
+    /**
+     * Layout of the nodes being ticked.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long elapsed;
+
+    /**
+     * Item id held by each node, 0 if empty.
+     */
+    private int[] inventory;
+
+    /**
+     * Item ids of each node after the ticks being worked out.
+     */
+    private int[] scratch;
+
+    /**
+     * Index of the first belt of each line.
+     */
+    private final int[] beltStart;
+
+    /**
+     * Number of belts in each line.
+     */
+    private final int[] beltCount;
+
+    /**
+     * Index of each line's Producer, or -1 if the line does not start with one.
+     */
+    private final int[] producer;
+
+    /**
+     * Index of each line's Receiver, or -1 if the line does not end with one.
+     */
+    private final int[] receiver;
+
+    /**
+     * Item id of each line's Producer key, 0 if there is none.
+     */
+    private final int[] producerKey;
+
+    /**
+     * Item id of each line's Receiver key, 0 if there is none.
+     */
+    private final int[] receiverKey;
+
+    /**
+     * Tick parity of each line's Producer.
+     */
+    private final int[] counter;
+
+    /**
+     * Items delivered by each line's Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Constructs a new AnalyticStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public AnalyticStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("AnalyticStrategy only ticks simple lines");
+        }
+        int lines = index.getLineCount();
+        inventory = new int[index.size()];
+        scratch = new int[index.size()];
+        beltStart = new int[lines];
+        beltCount = new int[lines];
+        producer = new int[lines];
+        receiver = new int[lines];
+        producerKey = new int[lines];
+        receiverKey = new int[lines];
+        counter = new int[lines];
+        delivered = new long[lines];
+
+        for (int l = 0; l < lines; l++) {
+            int head = index.lineStart(l);
+            int end = index.lineEnd(l);
+            producer[l] = index.kind[head] == TopologyIndex.KIND_PRODUCER ? head : -1;
+            receiver[l] = index.kind[end - 1] == TopologyIndex.KIND_RECEIVER ? end - 1 : -1;
+            beltStart[l] = producer[l] == -1 ? head : head + 1;
+            beltCount[l] = (receiver[l] == -1 ? end : end - 1) - beltStart[l];
+            producerKey[l] = producer[l] == -1 ? 0 : keyOf(producer[l]);
+            receiverKey[l] = receiver[l] == -1 ? 0 : keyOf(receiver[l]);
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of the key of the Container at the given index.
+     *
+     * @param node index of a Producer or Receiver
+     * @return the key's id
+     */
+    private int keyOf(int node) {
+        return ItemRegistry.intern(((Container) index.nodes[node]).getKey()).getId();
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of an item.
+     *
+     * @param item the item, or null
+     * @return the item's id, or 0 for null
+     */
+    private static int idOf(Item item) {
+        return item == null ? 0 : ItemRegistry.intern(item).getId();
+    }
+
+    @Override
+    public void load() {
+        elapsed = 0;
+        for (int l = 0; l < beltStart.length; l++) {
+            for (int k = 0; k < beltCount[l]; k++) {
+                inventory[beltStart[l] + k] = idOf(index.nodes[beltStart[l] + k].getInventory());
+            }
+            if (producer[l] != -1) {
+                counter[l] = ((Producer) index.nodes[producer[l]]).getCounter();
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                inventory[receiver[l]] = idOf(node.getPending());
+                delivered[l] = node.getDelivered();
+            }
+        }
+    }
+
+    @Override
+    public void tick() {
+        advance(1);
+    }
+
+    /**
+     * Works out the state of every line the given number of ticks from now.
+     *
+     * @param ticks number of ticks to advance by
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    @Override
+    public void advance(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (ticks == 0) {
+            return;
+        }
+        for (int l = 0; l < beltStart.length; l++) {
+            if (receiver[l] != -1) {
+                advanceToReceiver(l, ticks);
+            } else {
+                advanceBlocked(l, ticks);
+            }
+        }
+        int[] swap = inventory;
+        inventory = scratch;
+        scratch = swap;
+        elapsed += ticks;
+    }
+
+    /**
+     * Helper Method:
+     * Returns the tick a line's Producer first emits on, counting the next tick as 1.
+     *
+     * @param l the line
+     * @return 1 or 2
+     */
+    private int firstEmission(int l) {
+        return counter[l] == 0 ? 1 : 2;
+    }
+
+    /**
+     * Helper Method:
+     * Works out a line that ends in a Receiver, where every item moves one belt on each tick
+     * until the Receiver consumes the wrong item.
+     *
+     * @param l the line
+     * @param ticks number of ticks to advance by
+     */
+    private void advanceToReceiver(int l, long ticks) {
+        int start = beltStart[l];
+        int belts = beltCount[l];
+        int key = receiverKey[l];
+        int pending = inventory[receiver[l]];
+        int first = firstEmission(l);
+
+        /* consumptions happen in arrival order, so the first wrong one freezes the line */
+        long frozen = Long.MAX_VALUE;
+        int wrong = 0;
+        if (pending != 0 && pending != key) {
+            frozen = 1;
+            wrong = pending;
+        }
+        for (int k = belts - 1; k >= 0 && frozen == Long.MAX_VALUE; k--) {
+            int item = inventory[start + k];
+            if (item != 0 && item != key) {
+                frozen = belts - k + 1;
+                wrong = item;
+            }
+        }
+        if (frozen == Long.MAX_VALUE && producer[l] != -1 && producerKey[l] != key) {
+            frozen = first + belts + 1L;
+            wrong = producerKey[l];
+        }
+        long until = Math.min(ticks, frozen - 1);
+        if (until < ticks) {
+            faults.record(elapsed + until + 1, index.nodes[receiver[l]].getId(), key, wrong,
+                    ticks - until);
+        }
+
+        int arrived = until == 0 ? pending : 0;
+        if (pending != 0 && until >= 1) {
+            delivered[l]++;
+        }
+        for (int k = start; k < start + belts; k++) {
+            scratch[k] = 0;
+        }
+        for (int k = 0; k < belts; k++) {
+            int item = inventory[start + k];
+            if (item == 0) {
+                continue;
+            }
+            long belt = k + until;
+            if (belt < belts) {
+                scratch[start + (int) belt] = item;
+            } else if (belt == belts) {
+                arrived = item;
+            } else {
+                delivered[l]++;
+            }
+        }
+        if (producer[l] != -1) {
+            long consumedBy = until - belts - 1; // last emission tick consumed by until
+            if (consumedBy >= first) {
+                delivered[l] += (consumedBy - first) / 2 + 1;
+            }
+            long emission = Math.max(first, until - belts);
+            if ((emission - first) % 2 != 0) {
+                emission++;
+            }
+            for (; emission <= until; emission += 2) {
+                long belt = until - emission;
+                if (belt < belts) {
+                    scratch[start + (int) belt] = producerKey[l];
+                } else {
+                    arrived = producerKey[l];
+                }
+            }
+            counter[l] = (int) ((counter[l] + until) % 2);
+        }
+        scratch[receiver[l]] = arrived;
+    }
+
+    /**
+     * Helper Method:
+     * Works out a line with no Receiver, whose items back up against its tail.
+     *
+     * @param l the line
+     * @param ticks number of ticks to advance by
+     */
+    private void advanceBlocked(int l, long ticks) {
+        int start = beltStart[l];
+        int belts = beltCount[l];
+        for (int k = start; k < start + belts; k++) {
+            scratch[k] = 0;
+        }
+        int behind = 0;
+        for (int k = belts - 1; k >= 0; k--) {
+            int item = inventory[start + k];
+            if (item != 0) {
+                long belt = Math.min(k + ticks, belts - 1 - behind);
+                scratch[start + (int) belt] = item;
+                behind++;
+            }
+        }
+        if (producer[l] != -1) {
+            int first = firstEmission(l);
+            long emissions = ticks >= first ? (ticks - first) / 2 + 1 : 0;
+            emissions = Math.min(emissions, belts - behind);
+            for (long e = 0; e < emissions; e++) {
+                long belt = Math.min(ticks - (first + 2 * e), belts - 1 - behind);
+                scratch[start + (int) belt] = producerKey[l];
+                behind++;
+            }
+            counter[l] = (int) ((counter[l] + ticks) % 2);
+        }
+    }
+
+    @Override
+    public void store() {
+        for (int l = 0; l < beltStart.length; l++) {
+            for (int k = beltStart[l]; k < beltStart[l] + beltCount[l]; k++) {
+                index.nodes[k].setInventory(ItemRegistry.get(inventory[k]));
+            }
+            if (producer[l] != -1) {
+                ((Producer) index.nodes[producer[l]]).setCounter(counter[l]);
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                node.setPending(ItemRegistry.get(inventory[receiver[l]]));
+                node.setDelivered(delivered[l]);
+            }
+        }
+    }
+}
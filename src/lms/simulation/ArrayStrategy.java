@@ -0,0 +1,185 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Transport;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+/**
+ * A struct-of-arrays TickStrategy. The inventory of every node is held in a single int[] laid
+ * out by a TopologyIndex, with each Item replaced by its ItemRegistry id and 0 meaning empty.
+ * A tick is one backward loop over each line that only reads and writes ints.
+ * <p>
+ * The rules are exactly those of Receiver.tick, Transport.tick and Producer.tick, applied in
+ * the same tail to head order, so the results are identical to ObjectStrategy.
+ *
+ * @see TopologyIndex
+ */
+public class ArrayStrategy implements TickStrategy {
+
+    /**
+     * Layout of the arrays below.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long ticks;
+
+    /**
+     * Item id held by each node, 0 if empty. For a Receiver this is its pending item.
+     */
+    private final int[] inventory;
+
+    /**
+     * Item id of each Container's key, 0 for belts.
+     */
+    private final int[] key;
+
+    /**
+     * Tick parity of each Producer.
+     */
+    private final int[] counter;
+
+    /**
+     * Items delivered by each Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Constructs a new ArrayStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public ArrayStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("ArrayStrategy only ticks simple lines");
+        }
+        int size = index.size();
+        this.inventory = new int[size];
+        this.key = new int[size];
+        this.counter = new int[size];
+        this.delivered = new long[size];
+        for (int i = 0; i < size; i++) {
+            if (index.nodes[i] instanceof Container container) {
+                key[i] = idOf(container.getKey());
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of an item, interning it if needed.
+     *
+     * @param item the item, may be null
+     * @return the item's id, or 0 for null
+     */
+    private static int idOf(Item item) {
+        return item == null ? 0 : ItemRegistry.intern(item).getId();
+    }
+
+    @Override
+    public void load() {
+        ticks = 0;
+        for (int i = 0; i < inventory.length; i++) {
+            Transport node = index.nodes[i];
+            switch (index.kind[i]) {
+                case TopologyIndex.KIND_PRODUCER -> {
+                    inventory[i] = idOf(node.getInventory());
+                    counter[i] = ((Producer) node).getCounter();
+                }
+                case TopologyIndex.KIND_RECEIVER -> {
+                    inventory[i] = idOf(((Receiver) node).getPending());
+                    delivered[i] = ((Receiver) node).getDelivered();
+                }
+                default -> inventory[i] = idOf(node.getInventory());
+            }
+        }
+    }
+
+    /**
+     * Ticks every line from its tail: the Receiver consumes, every Belt with an empty
+     * successor moves its item forward, and the Producer produces on every second tick.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        int[] inventory = this.inventory;
+        byte[] kind = index.kind;
+        int[] lineStart = index.lineStart;
+        for (int l = 0; l < lineStart.length - 1; l++) {
+            int head = lineStart[l];
+            int i = lineStart[l + 1] - 1;
+            if (kind[i] == TopologyIndex.KIND_RECEIVER) {
+                int item = inventory[i];
+                if (item != 0 && item != key[i]) {
+                    faults.record(ticks, index.nodes[i].getId(), key[i], item);
+                    continue;
+                }
+                if (item != 0) {
+                    delivered[i]++;
+                    inventory[i] = 0;
+                }
+                i--;
+            } else if (kind[i] == TopologyIndex.KIND_BELT) {
+                i--; // a Belt at the tail has nowhere to go
+            }
+            for (; i > head; i--) {
+                int item = inventory[i];
+                if (item != 0 && inventory[i + 1] == 0) {
+                    inventory[i + 1] = item;
+                    inventory[i] = 0;
+                }
+            }
+            if (i == head) {
+                boolean hasNext = head + 1 < lineStart[l + 1];
+                if (kind[head] == TopologyIndex.KIND_PRODUCER) {
+                    counter[head] = (counter[head] + 1) % 2;
+                    if (counter[head] == 1) {
+                        if (hasNext && inventory[head] != 0 && inventory[head + 1] == 0) {
+                            inventory[head + 1] = inventory[head];
+                        }
+                        inventory[head] = key[head];
+                    }
+                } else if (hasNext && inventory[head] != 0 && inventory[head + 1] == 0) {
+                    inventory[head + 1] = inventory[head];
+                    inventory[head] = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void store() {
+        for (int i = 0; i < inventory.length; i++) {
+            Transport node = index.nodes[i];
+            switch (index.kind[i]) {
+                case TopologyIndex.KIND_PRODUCER -> ((Producer) node).setCounter(counter[i]);
+                case TopologyIndex.KIND_RECEIVER -> {
+                    ((Receiver) node).setPending(ItemRegistry.get(inventory[i]));
+                    ((Receiver) node).setDelivered(delivered[i]);
+                }
+                default -> node.setInventory(ItemRegistry.get(inventory[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package lms.simulation;
+
+/**
+ * A run of consecutive plain Belts, stored as the queue of items on it rather than as one
+ * inventory per belt. Positions are numbered from 0 at the upstream end to length - 1 at the
+ * downstream end, and only occupied positions are stored, so stepping the segment costs time
+ * proportional to the number of items on it, not the number of belts.
+ * <p>
+ * The segment behaves exactly like the belts it replaces would under Transport.tick: an item
+ * moves one position forward when the position ahead is empty after that position's own tick,
+ * and otherwise stays where it is.
+ */
+class BeltSegment {
+
+    /**
+     * Number of belts in the segment.
+     */
+    private final int length;
+
+    /**
+     * Positions of the items, in a ring buffer ordered from the most downstream item.
+     */
+    private final int[] positions;
+
+    /**
+     * Item ids, in the same order as positions.
+     */
+    private final int[] items;
+
+    /**
+     * Ring buffer slot of the most downstream item.
+     */
+    private int first;
+
+    /**
+     * Number of items on the segment.
+     */
+    private int count;
+
+    /**
+     * Constructs a new, empty BeltSegment of the given number of belts.
+     *
+     * @param length number of belts, at least 1
+     */
+    BeltSegment(int length) {
+        this.length = length;
+        this.positions = new int[length];
+        this.items = new int[length];
+        this.first = 0;
+        this.count = 0;
+    }
+
+    /**
+     * Returns the number of belts in this segment.
+     *
+     * @return segment length
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of items on this segment.
+     *
+     * @return item count
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the position of the k-th item, counting from the most downstream.
+     *
+     * @param k item number, from 0 to size() - 1
+     * @return position of the item
+     */
+    int positionAt(int k) {
+        return positions[(first + k) % length];
+    }
+
+    /**
+     * Returns the id of the k-th item, counting from the most downstream.
+     *
+     * @param k item number, from 0 to size() - 1
+     * @return item id
+     */
+    int itemAt(int k) {
+        return items[(first + k) % length];
+    }
+
+    /**
+     * Removes every item from this segment.
+     */
+    void clear() {
+        first = 0;
+        count = 0;
+    }
+
+    /**
+     * Places an item upstream of every item already on the segment.
+     *
+     * @param position position of the item, less than that of every item already placed
+     * @param item id of the item
+     */
+    void add(int position, int item) {
+        int slot = (first + count) % length;
+        positions[slot] = position;
+        items[slot] = item;
+        count++;
+    }
+
+    /**
+     * Checks whether the upstream end of the segment can take an item.
+     *
+     * @return true if position 0 is empty
+     */
+    boolean canAccept() {
+        return count == 0 || positionAt(count - 1) > 0;
+    }
+
+    /**
+     * Checks whether every item is backed up against the downstream end, so that none of them
+     * can move unless the node after the segment takes one.
+     *
+     * @return true if the items occupy the last size() positions, or there are no items
+     */
+    boolean isSettled() {
+        return count == 0 || positionAt(count - 1) == length - count;
+    }
+
+    /**
+     * Advances the segment by one tick.
+     *
+     * @param downstreamFree true if the node after the segment is empty and can take an item
+     * @return id of the item that left the segment into the next node, or 0 if none did
+     */
+    int step(boolean downstreamFree) {
+        int left = 0;
+        int boundary = length; // first position known to be occupied after this tick
+        if (count > 0 && positions[first] == length - 1 && downstreamFree) {
+            left = items[first];
+            first = (first + 1) % length;
+            count--;
+        }
+        for (int k = 0; k < count; k++) {
+            int slot = (first + k) % length;
+            int position = positions[slot];
+            if (position + 1 < boundary) {
+                positions[slot] = ++position;
+            }
+            boundary = position;
+        }
+        return left;
+    }
+}
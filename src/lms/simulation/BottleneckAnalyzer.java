@@ -0,0 +1,323 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Junction;
+import lms.logistics.container.Producer;
+import lms.logistics.container.ProductionRate;
+import lms.logistics.container.Receiver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A TickStrategy that ticks the Transport nodes one at a time, like the node by node lines of
+ * a TickPlan, and records where their items get stuck. A node stalls on a tick when it has an
+ * item to pass on but the node it outputs to has no room for it, which is the case in which
+ * {@link Transport#tick()} keeps its item. For a Junction, every output must be full.
+ * <p>
+ * For every node it counts the ticks it stalled on and the first tick it stalled on. For every
+ * line it counts the items delivered, giving the line's effective throughput, and compares it
+ * with the ceiling set by the rate of its Producer. The node of a line that stalled first is
+ * where its items start to queue up; the node after it is the one holding them back.
+ * <p>
+ * SimulationEngine runs one with {@link SimulationEngine#profile(long)}. Since every node is
+ * ticked through a virtual call, it is slower than the other strategies, and is meant for
+ * finding slow spots rather than running long simulations.
+ */
+public class BottleneckAnalyzer implements TickStrategy {
+
+    /**
+     * Transport nodes of each line, ordered from tail to head.
+     */
+    private final Transport[][] lines;
+
+    /**
+     * Number of ticks each node stalled on, indexed like lines.
+     */
+    private final long[][] stalls;
+
+    /**
+     * First tick each node stalled on, or 0 if it never stalled, indexed like lines.
+     */
+    private final long[][] firstStall;
+
+    /**
+     * Items delivered by each line's Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the analyzer was created.
+     */
+    private long ticks;
+
+    /**
+     * Ticks run since the start of the current run, as the FaultRecorder counts them.
+     */
+    private long runTicks;
+
+    /**
+     * Constructs a new BottleneckAnalyzer for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     */
+    public BottleneckAnalyzer(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException {
+        if (schedule == null || faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.lines = schedule.lines();
+        this.stalls = new long[lines.length][];
+        this.firstStall = new long[lines.length][];
+        for (int l = 0; l < lines.length; l++) {
+            stalls[l] = new long[lines[l].length];
+            firstStall[l] = new long[lines[l].length];
+        }
+        this.delivered = new long[lines.length];
+        this.faults = faults;
+        this.ticks = 0;
+    }
+
+    @Override
+    public void load() {
+        runTicks = 0;
+    }
+
+    /**
+     * Ticks every line from its tail, counting the nodes that stall. A line whose Receiver is
+     * in a bad state is recorded and skipped without affecting the other lines.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        runTicks++;
+        for (int l = 0; l < lines.length; l++) {
+            Transport[] line = lines[l];
+            if (line[0] instanceof Receiver receiver) {
+                Item pending = receiver.getPending();
+                if (!receiver.accepts(pending)) {
+                    faults.record(runTicks, receiver.getId(), idOf(receiver.getKey()),
+                            idOf(pending));
+                    continue;
+                }
+                if (pending != null) {
+                    delivered[l]++;
+                }
+            }
+            for (int i = 0; i < line.length; i++) {
+                Transport node = line[i];
+                if (node.isReady() && isBlocked(node)) {
+                    if (stalls[l][i]++ == 0) {
+                        firstStall[l][i] = ticks;
+                    }
+                }
+                node.tick();
+            }
+        }
+    }
+
+    @Override
+    public void store() {
+    }
+
+    /**
+     * Returns the number of ticks run by this analyzer.
+     *
+     * @return number of ticks profiled
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the number of lines profiled.
+     *
+     * @return number of lines in the schedule
+     */
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Returns the number of ticks a node stalled on.
+     *
+     * @param line index of the line in the schedule
+     * @param index position of the node in the line, from 0 for its tail
+     * @return ticks the node had an item its output had no room for
+     * @throws IndexOutOfBoundsException if line or index is out of range
+     */
+    public long getStalls(int line, int index) throws IndexOutOfBoundsException {
+        return stalls[line][index];
+    }
+
+    /**
+     * Returns the first tick a node stalled on.
+     *
+     * @param line index of the line in the schedule
+     * @param index position of the node in the line, from 0 for its tail
+     * @return the tick, from 1, or 0 if the node never stalled
+     * @throws IndexOutOfBoundsException if line or index is out of range
+     */
+    public long getFirstStall(int line, int index) throws IndexOutOfBoundsException {
+        return firstStall[line][index];
+    }
+
+    /**
+     * Returns the number of items a line delivered to its Receiver.
+     *
+     * @param line index of the line in the schedule
+     * @return items delivered while profiling
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public long getDelivered(int line) throws IndexOutOfBoundsException {
+        return delivered[line];
+    }
+
+    /**
+     * Returns the effective throughput of a line.
+     *
+     * @param line index of the line in the schedule
+     * @return items delivered per tick, or 0 if no ticks were run
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public double getThroughput(int line) throws IndexOutOfBoundsException {
+        return ticks == 0 ? 0 : (double) delivered[line] / ticks;
+    }
+
+    /**
+     * Returns the most a line could deliver, which is the rate of its Producer.
+     *
+     * @param line index of the line in the schedule
+     * @return items made per tick by the Producer at the head of the line, or 0 if it has none
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public double getCeiling(int line) throws IndexOutOfBoundsException {
+        Transport head = lines[line][lines[line].length - 1];
+        if (!(head instanceof Producer producer)) {
+            return 0;
+        }
+        ProductionRate rate = producer.getRate();
+        int emitting = 0;
+        for (int position = 0; position < rate.getPeriod(); position++) {
+            if (rate.emitsAt(position)) {
+                emitting++;
+            }
+        }
+        return (double) emitting / rate.getPeriod();
+    }
+
+    /**
+     * Returns the node of a line where items queued up first: the node that stalled earliest,
+     * or the one nearest the tail of those that first stalled on the same tick.
+     *
+     * @param line index of the line in the schedule
+     * @return the node, or null if no node of the line stalled
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public Transport getQueueNode(int line) throws IndexOutOfBoundsException {
+        Transport found = null;
+        long earliest = 0;
+        for (int i = 0; i < lines[line].length; i++) {
+            long first = firstStall[line][i];
+            if (first != 0 && (found == null || first < earliest)) {
+                found = lines[line][i];
+                earliest = first;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the report of every line, one per text line, starting with the line that
+     * stalled most. Each gives the line's index, its throughput against its ceiling, and the
+     * id of the node where items queued up first, e.g.
+     * "0: 0.250/0.500 items/tick, queues at 3".
+     *
+     * @return the sorted report
+     */
+    public String getReport() {
+        List<Integer> order = new ArrayList<>();
+        long[] totals = new long[lines.length];
+        for (int l = 0; l < lines.length; l++) {
+            order.add(l);
+            for (long count : stalls[l]) {
+                totals[l] += count;
+            }
+        }
+        order.sort(Comparator.comparingLong((Integer l) -> -totals[l])
+                .thenComparingInt(l -> l));
+        StringBuilder report = new StringBuilder();
+        for (int l : order) {
+            Transport queue = getQueueNode(l);
+            report.append(String.format(Locale.ROOT, "%d: %.3f/%.3f items/tick, ", l,
+                    getThroughput(l), getCeiling(l)));
+            report.append(queue == null ? "no queue" : "queues at " + queue.getId());
+            report.append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Returns a table of every node in schedule order, one row per text line after a header
+     * row, giving its id, its line, the ticks it stalled on and the first tick it stalled on.
+     *
+     * @return the per node table
+     */
+    public String getNodeTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%8s %6s %12s %12s", "id", "line", "stalls",
+                "first")).append(System.lineSeparator());
+        for (int l = 0; l < lines.length; l++) {
+            for (int i = 0; i < lines[l].length; i++) {
+                table.append(String.format(Locale.ROOT, "%8d %6d %12d %12d",
+                        lines[l][i].getId(), l, stalls[l][i], firstStall[l][i]))
+                        .append(System.lineSeparator());
+            }
+        }
+        return table.toString();
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether the nodes a node outputs to have no room for an item.
+     *
+     * @param node the node to check
+     * @return true if it has an output and none of its outputs can take an item
+     */
+    private static boolean isBlocked(Transport node) {
+        if (node instanceof Junction junction) {
+            List<Path> outputs = junction.getOutputs();
+            for (Path output : outputs) {
+                if (output.getNode().canAccept()) {
+                    return false;
+                }
+            }
+            return !outputs.isEmpty();
+        }
+        Path next = node.getPath().getNext();
+        return next != null && !next.getNode().canAccept();
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of an item.
+     *
+     * @param item the item, or null
+     * @return its id, or 0 for null
+     */
+    private static int idOf(Item item) {
+        return item == null ? 0 : ItemRegistry.intern(item).getId();
+    }
+}
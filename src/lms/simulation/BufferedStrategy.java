@@ -0,0 +1,376 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A double-buffered TickStrategy. Each tick reads the state of tick t from one array and writes
+ * the state of tick t + 1 into another, so no node's update depends on the order nodes are
+ * visited in. The backward walk of Path.applyAll is no longer needed.
+ * <p>
+ * Number the belts of a line from 0 at the head, with its Receiver, if any, as cell belts. The
+ * backward walk then comes down to one boundary per line, the limit:
+ * <ul>
+ *     <li>a line ending in a healthy Receiver is emptied from the tail first, so every cell
+ *     takes the item of the cell before it: the limit is belts + 1</li>
+ *     <li>on any other line the run of occupied belts ending at the tail is blocked, and only
+ *     the cells below it take the item of the cell before: the limit is belts minus the length
+ *     of that run</li>
+ *     <li>a line whose Receiver holds the wrong item does not change: the limit is 0</li>
+ * </ul>
+ * Cell 0 takes whatever the Producer emits, if it is below the limit. So a tick is a short
+ * pass over the lines to find each limit, consume, and advance each Producer. That is
+ * followed by one pass over every cell:
+ * {@code next[k] = k >= limit ? cur[k] : k > 0 ? cur[k - 1] : emitted}. The second pass
+ * reads only the old buffer and writes only the new one. It may be split into chunks of any
+ * size, even in the middle of a line, and run on a ForkJoinPool.
+ */
+public class BufferedStrategy implements TickStrategy {
+
+    /**
+     * Layout of the nodes being ticked.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long ticks;
+
+    /**
+     * Item id held by each node on the current tick, 0 if empty.
+     */
+    private int[] current;
+
+    /**
+     * Item id held by each node on the next tick.
+     */
+    private int[] next;
+
+    /**
+     * Cell number of each node within its line, or -1 for a Producer.
+     */
+    private final int[] cell;
+
+    /**
+     * Index of the first belt of each line.
+     */
+    private final int[] beltStart;
+
+    /**
+     * Number of belts in each line.
+     */
+    private final int[] beltCount;
+
+    /**
+     * Index of each line's Producer, or -1 if the line does not start with one.
+     */
+    private final int[] producer;
+
+    /**
+     * Index of each line's Receiver, or -1 if the line does not end with one.
+     */
+    private final int[] receiver;
+
+    /**
+     * Item id of each line's Producer key, 0 if there is none.
+     */
+    private final int[] producerKey;
+
+    /**
+     * Item id of each line's Receiver key, 0 if there is none.
+     */
+    private final int[] receiverKey;
+
+    /**
+     * Tick parity of each line's Producer.
+     */
+    private final int[] counter;
+
+    /**
+     * Items delivered by each line's Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * First cell of each line that keeps its item on the tick being computed.
+     */
+    private final int[] limit;
+
+    /**
+     * Item id emitted into cell 0 of each line on the tick being computed, 0 if none.
+     */
+    private final int[] emitted;
+
+    /**
+     * Pool the cell pass is split across, or null to run it on the calling thread.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Chunks of the cell pass, reused on every tick.
+     */
+    private final Chunk[] chunks;
+
+    /**
+     * Task forking every chunk, reused on every tick.
+     */
+    private final RecursiveAction sweep;
+
+    /**
+     * Constructs a new BufferedStrategy for the given schedule, computing each tick on the
+     * calling thread.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public BufferedStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        this(schedule, faults, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a new BufferedStrategy for the given schedule, splitting the cell pass of
+     * each tick into chunks run on the given pool.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @param pool the pool to run chunks on, or null to run them on the calling thread
+     * @param chunkSize number of nodes in each chunk
+     * @throws IllegalArgumentException if schedule or faults is null, or chunkSize is less
+     * than 1
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public BufferedStrategy(LineSchedule schedule, FaultRecorder faults, ForkJoinPool pool,
+                            int chunkSize)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("BufferedStrategy only ticks simple lines");
+        }
+        int size = index.size();
+        int lines = index.getLineCount();
+        current = new int[size];
+        next = new int[size];
+        cell = new int[size];
+        beltStart = new int[lines];
+        beltCount = new int[lines];
+        producer = new int[lines];
+        receiver = new int[lines];
+        producerKey = new int[lines];
+        receiverKey = new int[lines];
+        counter = new int[lines];
+        delivered = new long[lines];
+        limit = new int[lines];
+        emitted = new int[lines];
+
+        for (int l = 0; l < lines; l++) {
+            int head = index.lineStart(l);
+            int end = index.lineEnd(l);
+            producer[l] = index.kind[head] == TopologyIndex.KIND_PRODUCER ? head : -1;
+            receiver[l] = index.kind[end - 1] == TopologyIndex.KIND_RECEIVER ? end - 1 : -1;
+            beltStart[l] = producer[l] == -1 ? head : head + 1;
+            beltCount[l] = (receiver[l] == -1 ? end : end - 1) - beltStart[l];
+            producerKey[l] = producer[l] == -1 ? 0 : keyOf(producer[l]);
+            receiverKey[l] = receiver[l] == -1 ? 0 : keyOf(receiver[l]);
+            for (int i = head; i < end; i++) {
+                cell[i] = i - beltStart[l];
+            }
+        }
+
+        this.pool = pool;
+        int count = pool == null ? 1 : (int) Math.max(1, (size + (long) chunkSize - 1) / chunkSize);
+        this.chunks = new Chunk[count];
+        for (int c = 0; c < count; c++) {
+            chunks[c] = new Chunk((int) ((long) size * c / count),
+                    (int) ((long) size * (c + 1) / count));
+        }
+        this.sweep = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(chunks);
+            }
+        };
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of the key of the Container at the given index.
+     *
+     * @param node index of a Producer or Receiver
+     * @return the key's id
+     */
+    private int keyOf(int node) {
+        return ItemRegistry.intern(((Container) index.nodes[node]).getKey()).getId();
+    }
+
+    @Override
+    public void load() {
+        ticks = 0;
+        for (int l = 0; l < beltStart.length; l++) {
+            for (int i = beltStart[l]; i < beltStart[l] + beltCount[l]; i++) {
+                Item item = index.nodes[i].getInventory();
+                current[i] = item == null ? 0 : ItemRegistry.intern(item).getId();
+            }
+            if (producer[l] != -1) {
+                counter[l] = ((Producer) index.nodes[producer[l]]).getCounter();
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                Item item = node.getPending();
+                current[receiver[l]] = item == null ? 0 : ItemRegistry.intern(item).getId();
+                delivered[l] = node.getDelivered();
+            }
+        }
+    }
+
+    /**
+     * Computes the next tick into the spare buffer, then swaps the buffers.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        for (int l = 0; l < beltStart.length; l++) {
+            prepareLine(l);
+        }
+        if (pool == null || chunks.length == 1) {
+            for (Chunk chunk : chunks) {
+                chunk.compute();
+            }
+        } else {
+            for (Chunk chunk : chunks) {
+                chunk.reinitialize();
+            }
+            sweep.reinitialize();
+            pool.invoke(sweep);
+        }
+        int[] swap = current;
+        current = next;
+        next = swap;
+    }
+
+    /**
+     * Helper Method:
+     * Finds the limit of a line for the tick being computed, lets its Receiver consume and
+     * advances its Producer.
+     *
+     * @param l the line
+     */
+    private void prepareLine(int l) {
+        int belts = beltCount[l];
+        emitted[l] = 0;
+        if (receiver[l] != -1) {
+            int pending = current[receiver[l]];
+            if (pending != 0 && pending != receiverKey[l]) {
+                faults.record(ticks, index.nodes[receiver[l]].getId(), receiverKey[l], pending);
+                limit[l] = 0;
+                return;
+            }
+            if (pending != 0) {
+                delivered[l]++;
+            }
+            limit[l] = belts + 1;
+        } else {
+            int k = belts;
+            while (k > 0 && current[beltStart[l] + k - 1] != 0) {
+                k--;
+            }
+            limit[l] = k;
+        }
+        if (producer[l] != -1) {
+            counter[l] = (counter[l] + 1) % 2;
+            if (counter[l] == 1 && limit[l] > 0) {
+                emitted[l] = producerKey[l];
+            }
+        }
+    }
+
+    @Override
+    public void store() {
+        for (int l = 0; l < beltStart.length; l++) {
+            for (int i = beltStart[l]; i < beltStart[l] + beltCount[l]; i++) {
+                index.nodes[i].setInventory(ItemRegistry.get(current[i]));
+            }
+            if (producer[l] != -1) {
+                ((Producer) index.nodes[producer[l]]).setCounter(counter[l]);
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                node.setPending(ItemRegistry.get(current[receiver[l]]));
+                node.setDelivered(delivered[l]);
+            }
+        }
+    }
+
+    /**
+     * A range of nodes whose next state is computed from the current buffer alone.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        /**
+         * Version of the serialized form, which is never used.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * First node of the range.
+         */
+        private final int from;
+
+        /**
+         * One past the last node of the range.
+         */
+        private final int to;
+
+        /**
+         * Constructs a new Chunk.
+         *
+         * @param from first node of the range
+         * @param to one past the last node of the range
+         */
+        private Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int[] current = BufferedStrategy.this.current;
+            int[] next = BufferedStrategy.this.next;
+            int[] lineId = index.lineId;
+            for (int i = from; i < to; i++) {
+                int l = lineId[i];
+                int k = cell[i];
+                if (k < 0 || k >= limit[l]) {
+                    next[i] = current[i];
+                } else {
+                    next[i] = k > 0 ? current[i - 1] : emitted[l];
+                }
+            }
+        }
+    }
+}
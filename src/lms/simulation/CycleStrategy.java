@@ -0,0 +1,404 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Transport;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.Arrays;
+
+/**
+ * A struct-of-arrays TickStrategy that notices when the factory has become periodic and skips
+ * whole periods. The state that decides the future is finite: every node's item plus every
+ * Producer's parity. So after a transient the factory repeats itself exactly. Only the
+ * delivered counters keep growing.
+ * <p>
+ * A Zobrist hash of that state is updated on every write during a tick. Each (node, item)
+ * pair and each Producer parity has a pseudo-random 64-bit key, and the hash is the XOR of the
+ * keys in the current state. Brent's algorithm looks for a repeat. A snapshot of the state is
+ * taken at every power of two ticks, and the hash after each later tick is compared to the
+ * snapshot's. A matching hash is confirmed against the snapshot itself, so a hash collision can
+ * never cause a wrong skip.
+ * <p>
+ * Once the state has repeated after p ticks, {@link #advance(long)} skips as many whole periods
+ * as fit in the ticks remaining. Each delivered counter grows by the same amount over every
+ * period, so it is extrapolated exactly. The rest of the ticks are run normally.
+ * <p>
+ * The engine loads and stores the state around every step, so a detection that started afresh
+ * on every load would never see a repeat in a run of short steps. Instead, load compares the
+ * grid with the state last stored, and keeps the snapshot and any period found while they
+ * match. Detection only starts again once something outside the strategy has changed the grid.
+ */
+public class CycleStrategy implements TickStrategy {
+
+    /**
+     * Layout of the arrays below.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long elapsed;
+
+    /**
+     * Item id held by each node, 0 if empty. For a Receiver this is its pending item.
+     */
+    private final int[] inventory;
+
+    /**
+     * Item id of each Container's key, 0 for belts.
+     */
+    private final int[] key;
+
+    /**
+     * Tick parity of each Producer.
+     */
+    private final int[] counter;
+
+    /**
+     * Items delivered by each Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Whether each line was skipped for a bad Receiver on the last tick.
+     */
+    private final boolean[] faulted;
+
+    /**
+     * Zobrist hash of inventory and counter.
+     */
+    private long hash;
+
+    /**
+     * Copy of inventory when the snapshot was taken.
+     */
+    private final int[] snapshotInventory;
+
+    /**
+     * Copy of counter when the snapshot was taken.
+     */
+    private final int[] snapshotCounter;
+
+    /**
+     * Copy of delivered when the snapshot was taken.
+     */
+    private final long[] snapshotDelivered;
+
+    /**
+     * Items each Receiver delivers over one period, once a period has been found.
+     */
+    private final long[] periodDelivered;
+
+    /**
+     * Hash of the state when the snapshot was taken.
+     */
+    private long snapshotHash;
+
+    /**
+     * Ticks since the snapshot was taken.
+     */
+    private long sinceSnapshot;
+
+    /**
+     * Ticks the next snapshot will be taken after, doubling each time.
+     */
+    private long power;
+
+    /**
+     * Period found since detection last started, or 0 if none has been found yet.
+     */
+    private long period;
+
+    /**
+     * Whether the grid was last written by store, and not loaded since.
+     */
+    private boolean stored;
+
+    /**
+     * Constructs a new CycleStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public CycleStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("CycleStrategy only ticks simple lines");
+        }
+        int size = index.size();
+        this.inventory = new int[size];
+        this.key = new int[size];
+        this.counter = new int[size];
+        this.delivered = new long[size];
+        this.faulted = new boolean[index.getLineCount()];
+        this.snapshotInventory = new int[size];
+        this.snapshotCounter = new int[size];
+        this.snapshotDelivered = new long[size];
+        this.periodDelivered = new long[size];
+        for (int i = 0; i < size; i++) {
+            if (index.nodes[i] instanceof Container container) {
+                key[i] = idOf(container.getKey());
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of an item, interning it if needed.
+     *
+     * @param item the item, may be null
+     * @return the item's id, or 0 for null
+     */
+    private static int idOf(Item item) {
+        return item == null ? 0 : ItemRegistry.intern(item).getId();
+    }
+
+    /**
+     * Helper Method:
+     * Returns the Zobrist key of a node holding an item, using the SplitMix64 finaliser as a
+     * table of random numbers that never needs to be stored. An empty node has key 0, and
+     * item -1 stands for a Producer with parity 1.
+     *
+     * @param node index of the node
+     * @param item id of the item, 0 for none
+     * @return the key
+     */
+    private static long zobrist(int node, int item) {
+        if (item == 0) {
+            return 0;
+        }
+        long z = ((long) node << 32 | (item & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Helper Method:
+     * Changes the item held by a node, updating the hash.
+     *
+     * @param node index of the node
+     * @param item id of the new item, 0 for none
+     */
+    private void set(int node, int item) {
+        hash ^= zobrist(node, inventory[node]) ^ zobrist(node, item);
+        inventory[node] = item;
+    }
+
+    /**
+     * Returns the period the factory was found to repeat with since detection last started.
+     *
+     * @return the period in ticks, or 0 if no repeat has been found
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Reads the grid, starting detection again unless it still holds the state last stored.
+     */
+    @Override
+    public void load() {
+        elapsed = 0;
+        hash = 0;
+        boolean unchanged = stored;
+        stored = false;
+        for (int i = 0; i < inventory.length; i++) {
+            Transport node = index.nodes[i];
+            int item;
+            switch (index.kind[i]) {
+                case TopologyIndex.KIND_PRODUCER -> {
+                    item = idOf(node.getInventory());
+                    int parity = ((Producer) node).getCounter();
+                    unchanged &= parity == counter[i];
+                    counter[i] = parity;
+                    hash ^= zobrist(i, -parity);
+                }
+                case TopologyIndex.KIND_RECEIVER -> {
+                    item = idOf(((Receiver) node).getPending());
+                    long count = ((Receiver) node).getDelivered();
+                    unchanged &= count == delivered[i];
+                    delivered[i] = count;
+                }
+                default -> item = idOf(node.getInventory());
+            }
+            unchanged &= item == inventory[i];
+            inventory[i] = item;
+            hash ^= zobrist(i, item);
+        }
+        if (!unchanged) {
+            period = 0;
+            power = 1;
+            takeSnapshot();
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Records the current state as the one later states are compared against.
+     */
+    private void takeSnapshot() {
+        System.arraycopy(inventory, 0, snapshotInventory, 0, inventory.length);
+        System.arraycopy(counter, 0, snapshotCounter, 0, counter.length);
+        System.arraycopy(delivered, 0, snapshotDelivered, 0, delivered.length);
+        snapshotHash = hash;
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * Runs the given number of ticks, skipping whole periods once the factory is found to
+     * repeat.
+     *
+     * @param ticks number of ticks to advance by
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    @Override
+    public void advance(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        while (ticks > 0) {
+            tick();
+            ticks--;
+            if (period == 0) {
+                detect();
+            }
+            if (period != 0 && ticks >= period) {
+                skip(ticks / period);
+                ticks %= period;
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * One step of Brent's algorithm: checks whether the state is the snapshot again, and
+     * takes a new snapshot when the distance from the old one reaches the next power of two.
+     */
+    private void detect() {
+        sinceSnapshot++;
+        if (hash == snapshotHash && Arrays.equals(inventory, snapshotInventory)
+                && Arrays.equals(counter, snapshotCounter)) {
+            period = sinceSnapshot;
+            for (int i = 0; i < delivered.length; i++) {
+                periodDelivered[i] = delivered[i] - snapshotDelivered[i];
+            }
+        } else if (sinceSnapshot == power) {
+            power *= 2;
+            takeSnapshot();
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Skips whole periods, leaving every node as it is and growing each delivered counter by
+     * what it gained over the period found by detect. Lines stuck on a bad Receiver are
+     * reported for every skipped tick.
+     *
+     * @param periods number of periods to skip
+     */
+    private void skip(long periods) {
+        for (int i = 0; i < delivered.length; i++) {
+            if (index.kind[i] == TopologyIndex.KIND_RECEIVER) {
+                delivered[i] += periods * periodDelivered[i];
+            }
+        }
+        for (int l = 0; l < faulted.length; l++) {
+            if (faulted[l]) {
+                int i = index.lineEnd(l) - 1;
+                faults.record(elapsed + 1, index.nodes[i].getId(), key[i], inventory[i],
+                        periods * period);
+            }
+        }
+        elapsed += periods * period;
+    }
+
+    /**
+     * Ticks every line from its tail: the Receiver consumes, every Belt with an empty
+     * successor moves its item forward, and the Producer produces on every second tick.
+     */
+    @Override
+    public void tick() {
+        elapsed++;
+        int[] inventory = this.inventory;
+        byte[] kind = index.kind;
+        int[] lineStart = index.lineStart;
+        for (int l = 0; l < lineStart.length - 1; l++) {
+            int head = lineStart[l];
+            int i = lineStart[l + 1] - 1;
+            faulted[l] = false;
+            if (kind[i] == TopologyIndex.KIND_RECEIVER) {
+                int item = inventory[i];
+                if (item != 0 && item != key[i]) {
+                    faults.record(elapsed, index.nodes[i].getId(), key[i], item);
+                    faulted[l] = true;
+                    continue;
+                }
+                if (item != 0) {
+                    delivered[i]++;
+                    set(i, 0);
+                }
+                i--;
+            } else if (kind[i] == TopologyIndex.KIND_BELT) {
+                i--; // a Belt at the tail has nowhere to go
+            }
+            for (; i > head; i--) {
+                int item = inventory[i];
+                if (item != 0 && inventory[i + 1] == 0) {
+                    set(i + 1, item);
+                    set(i, 0);
+                }
+            }
+            if (i == head) {
+                boolean hasNext = head + 1 < lineStart[l + 1];
+                if (kind[head] == TopologyIndex.KIND_PRODUCER) {
+                    hash ^= zobrist(head, -1);
+                    counter[head] = (counter[head] + 1) % 2;
+                    if (counter[head] == 1) {
+                        if (hasNext && inventory[head] != 0 && inventory[head + 1] == 0) {
+                            set(head + 1, inventory[head]);
+                        }
+                        set(head, key[head]);
+                    }
+                } else if (hasNext && inventory[head] != 0 && inventory[head + 1] == 0) {
+                    set(head + 1, inventory[head]);
+                    set(head, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void store() {
+        for (int i = 0; i < inventory.length; i++) {
+            Transport node = index.nodes[i];
+            switch (index.kind[i]) {
+                case TopologyIndex.KIND_PRODUCER -> ((Producer) node).setCounter(counter[i]);
+                case TopologyIndex.KIND_RECEIVER -> {
+                    ((Receiver) node).setPending(ItemRegistry.get(inventory[i]));
+                    ((Receiver) node).setDelivered(delivered[i]);
+                }
+                default -> node.setInventory(ItemRegistry.get(inventory[i]));
+            }
+        }
+        stored = true;
+    }
+}
@@ -0,0 +1,450 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+/**
+ * A discrete-event TickStrategy. Instead of touching every line on every tick, it schedules
+ * only the moments at which something happens on a TimingWheel and jumps from one to the next:
+ * <ul>
+ *     <li>EMIT - a Producer places an item on its first belt, or straight into its Receiver</li>
+ *     <li>ARRIVE - the most downstream item of a line reaches its Receiver</li>
+ *     <li>CONSUME - a Receiver takes its pending item, freeing it for the next arrival, or
+ *     finds the wrong item and stops the line</li>
+ * </ul>
+ * Between events the items move deterministically, so only the tick each item was placed at is
+ * kept. The item k places from the downstream end of a line is at belt
+ * {@code offset + t} on tick t. If the line has no Receiver, that is capped at
+ * {@code belts - 1 - k}, where it is backed up behind the items ahead of it. A line whose
+ * Receiver finds the wrong item is frozen as it was on the tick before and parked, with no
+ * more events scheduled. Its fault is recorded once when found, and the later ticks it stays
+ * frozen for are recorded as one record with repeats when the state is stored.
+ * <p>
+ * Each line has at most one event of each kind scheduled, and {@link #advance(long)} costs
+ * time in proportion to the number of events in the range, however many ticks it covers. This
+ * suits sparse factories with long belts and few items. {@link #store()} writes back exactly
+ * the state the Transport nodes would hold after the same ticks.
+ */
+public class EventStrategy implements TickStrategy {
+
+    /**
+     * Event kind of a Receiver consuming its pending item.
+     */
+    private static final int CONSUME = 0;
+
+    /**
+     * Event kind of an item reaching a Receiver.
+     */
+    private static final int ARRIVE = 1;
+
+    /**
+     * Event kind of a Producer emitting an item.
+     */
+    private static final int EMIT = 2;
+
+    /**
+     * Largest tick that can be reached between a load and a store.
+     */
+    private static final long MAX_TICK = (TimingWheel.MAX_DEADLINE >>> 2) - 1;
+
+    /**
+     * Layout of the nodes being ticked.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Index of the first belt of each line.
+     */
+    private final int[] beltStart;
+
+    /**
+     * Number of belts in each line.
+     */
+    private final int[] beltCount;
+
+    /**
+     * Index of each line's Producer, or -1 if the line does not start with one.
+     */
+    private final int[] producer;
+
+    /**
+     * Index of each line's Receiver, or -1 if the line does not end with one.
+     */
+    private final int[] receiver;
+
+    /**
+     * Item id of each line's Producer key, 0 if there is none.
+     */
+    private final int[] producerKey;
+
+    /**
+     * Item id of each line's Receiver key, 0 if there is none.
+     */
+    private final int[] receiverKey;
+
+    /**
+     * Tick parity of each line's Producer when the state was loaded.
+     */
+    private final int[] counter;
+
+    /**
+     * Item id waiting in each line's Receiver, 0 if none.
+     */
+    private final int[] pending;
+
+    /**
+     * Items delivered by each line's Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Tick each line's Receiver failed on, or -1 if it has not.
+     */
+    private final long[] frozenAt;
+
+    /**
+     * Last tick each frozen line's fault has been recorded for.
+     */
+    private final long[] recordedTo;
+
+    /**
+     * Position of each line's most downstream item in its slice of offsets and items.
+     */
+    private final int[] first;
+
+    /**
+     * Number of items on each line's belts.
+     */
+    private final int[] count;
+
+    /**
+     * Belt each item would be on at tick 0, by line, in the same slots as the line's belts.
+     */
+    private final long[] offsets;
+
+    /**
+     * Item id of each item, in the same slots as offsets.
+     */
+    private final int[] items;
+
+    /**
+     * Indices of the belts that held an item when the state was last loaded.
+     */
+    private final int[] loaded;
+
+    /**
+     * Number of entries used in loaded.
+     */
+    private int loadedCount;
+
+    /**
+     * Pending events, keyed by tick and then by kind.
+     */
+    private final TimingWheel wheel;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long now;
+
+    /**
+     * Constructs a new EventStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public EventStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("EventStrategy only ticks simple lines");
+        }
+        int lines = index.getLineCount();
+        beltStart = new int[lines];
+        beltCount = new int[lines];
+        producer = new int[lines];
+        receiver = new int[lines];
+        producerKey = new int[lines];
+        receiverKey = new int[lines];
+        counter = new int[lines];
+        pending = new int[lines];
+        delivered = new long[lines];
+        frozenAt = new long[lines];
+        recordedTo = new long[lines];
+        first = new int[lines];
+        count = new int[lines];
+        offsets = new long[index.size()];
+        items = new int[index.size()];
+        loaded = new int[index.size()];
+        wheel = new TimingWheel(3 * lines);
+
+        for (int l = 0; l < lines; l++) {
+            int head = index.lineStart(l);
+            int end = index.lineEnd(l);
+            producer[l] = index.kind[head] == TopologyIndex.KIND_PRODUCER ? head : -1;
+            receiver[l] = index.kind[end - 1] == TopologyIndex.KIND_RECEIVER ? end - 1 : -1;
+            beltStart[l] = producer[l] == -1 ? head : head + 1;
+            beltCount[l] = (receiver[l] == -1 ? end : end - 1) - beltStart[l];
+            producerKey[l] = producer[l] == -1 ? 0 : keyOf(producer[l]);
+            receiverKey[l] = receiver[l] == -1 ? 0 : keyOf(receiver[l]);
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of the key of the Container at the given index.
+     *
+     * @param node index of a Producer or Receiver
+     * @return the key's id
+     */
+    private int keyOf(int node) {
+        return ItemRegistry.intern(((Container) index.nodes[node]).getKey()).getId();
+    }
+
+    /**
+     * Reads the grid and schedules the first event of each kind on every line.
+     */
+    @Override
+    public void load() {
+        wheel.clear();
+        now = 0;
+        loadedCount = 0;
+        for (int l = 0; l < beltStart.length; l++) {
+            frozenAt[l] = -1;
+            first[l] = 0;
+            count[l] = 0;
+            for (int k = beltCount[l] - 1; k >= 0; k--) {
+                Item item = index.nodes[beltStart[l] + k].getInventory();
+                if (item != null) {
+                    loaded[loadedCount++] = beltStart[l] + k;
+                    push(l, k, ItemRegistry.intern(item).getId());
+                }
+            }
+            if (producer[l] != -1) {
+                counter[l] = ((Producer) index.nodes[producer[l]]).getCounter();
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                Item item = node.getPending();
+                pending[l] = item == null ? 0 : ItemRegistry.intern(item).getId();
+                delivered[l] = node.getDelivered();
+                if (pending[l] != 0) {
+                    schedule(l, CONSUME, 1);
+                }
+                if (count[l] > 0) {
+                    schedule(l, ARRIVE, beltCount[l] - offsets[slot(l, 0)]);
+                }
+            }
+            if (producer[l] != -1 && (receiver[l] != -1 || count[l] < beltCount[l])) {
+                schedule(l, EMIT, counter[l] == 0 ? 1 : 2);
+            }
+        }
+    }
+
+    @Override
+    public void tick() {
+        advance(1);
+    }
+
+    /**
+     * Runs every event due in the next ticks ticks, jumping over the ticks in between.
+     *
+     * @param ticks number of ticks to advance by
+     * @throws IllegalArgumentException if ticks is negative, or would take the strategy past
+     * 2^58 - 2 ticks since the last load
+     */
+    @Override
+    public void advance(long ticks) throws IllegalArgumentException {
+        if (ticks < 0 || ticks > MAX_TICK - now) {
+            throw new IllegalArgumentException();
+        }
+        long target = now + ticks;
+        long limit = (target << 2) | 3;
+        for (int event = wheel.poll(limit); event != -1; event = wheel.poll(limit)) {
+            long tick = wheel.current() >>> 2;
+            int line = event >>> 2;
+            switch (event & 3) {
+                case CONSUME -> consume(line, tick);
+                case ARRIVE -> arrive(line, tick);
+                default -> emit(line, tick);
+            }
+        }
+        now = target;
+    }
+
+    /**
+     * Helper Method:
+     * The Receiver of a line consumes its pending item, or stops the line if it is the wrong
+     * one. A stopped line schedules no more events; store records its fault on the ticks
+     * after this one.
+     *
+     * @param l the line
+     * @param tick the tick the event happens on
+     */
+    private void consume(int l, long tick) {
+        if (pending[l] == receiverKey[l]) {
+            delivered[l]++;
+            pending[l] = 0;
+            return;
+        }
+        frozenAt[l] = tick;
+        recordedTo[l] = tick;
+        recordFault(l, tick, 1);
+    }
+
+    /**
+     * Helper Method:
+     * Records the fault of a stopped line on a run of ticks.
+     *
+     * @param l the line
+     * @param tick the first tick of the run
+     * @param repeats number of ticks in the run
+     */
+    private void recordFault(int l, long tick, long repeats) {
+        faults.record(tick, index.nodes[receiver[l]].getId(), receiverKey[l], pending[l],
+                repeats);
+    }
+
+    /**
+     * Helper Method:
+     * Moves the most downstream item of a line into its Receiver, and schedules the arrival of
+     * the item behind it.
+     *
+     * @param l the line
+     * @param tick the tick the event happens on
+     */
+    private void arrive(int l, long tick) {
+        if (frozenAt[l] != -1) {
+            return;
+        }
+        pending[l] = items[slot(l, 0)];
+        first[l] = first[l] + 1 == beltCount[l] ? 0 : first[l] + 1;
+        count[l]--;
+        schedule(l, CONSUME, tick + 1);
+        if (count[l] > 0) {
+            schedule(l, ARRIVE, beltCount[l] - offsets[slot(l, 0)]);
+        }
+    }
+
+    /**
+     * Helper Method:
+     * The Producer of a line emits an item, and schedules its next emission if there will be
+     * room for it. Only a line with no Receiver ever runs out of room, and it never gets any
+     * back.
+     *
+     * @param l the line
+     * @param tick the tick the event happens on
+     */
+    private void emit(int l, long tick) {
+        if (frozenAt[l] != -1) {
+            return;
+        }
+        if (receiver[l] != -1) {
+            if (beltCount[l] == 0) {
+                pending[l] = producerKey[l]; // consumed earlier in the same tick
+                schedule(l, CONSUME, tick + 1);
+            } else {
+                push(l, -tick, producerKey[l]);
+                if (count[l] == 1) {
+                    schedule(l, ARRIVE, tick + beltCount[l]);
+                }
+            }
+            schedule(l, EMIT, tick + 2);
+        } else {
+            push(l, -tick, producerKey[l]);
+            if (count[l] < beltCount[l]) {
+                schedule(l, EMIT, tick + 2);
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Adds an item upstream of every other item on a line.
+     *
+     * @param l the line
+     * @param offset belt the item would be on at tick 0
+     * @param item id of the item
+     */
+    private void push(int l, long offset, int item) {
+        int slot = slot(l, count[l]++);
+        offsets[slot] = offset;
+        items[slot] = item;
+    }
+
+    /**
+     * Helper Method:
+     * Returns where the k-th item from the downstream end of a line is kept.
+     *
+     * @param l the line
+     * @param k position of the item, from 0 for the most downstream one
+     * @return index into offsets and items
+     */
+    private int slot(int l, int k) {
+        int position = first[l] + k;
+        return beltStart[l] + (position >= beltCount[l] ? position - beltCount[l] : position);
+    }
+
+    /**
+     * Helper Method:
+     * Schedules an event of the given kind for a line.
+     *
+     * @param l the line
+     * @param kind CONSUME, ARRIVE or EMIT
+     * @param tick the tick the event is due on
+     */
+    private void schedule(int l, int kind, long tick) {
+        wheel.schedule((tick << 2) | kind, (l << 2) | kind);
+    }
+
+    /**
+     * Writes back the state of every line as of the current tick, or as of the tick before it
+     * froze. The fault of a frozen line is recorded for every tick after the one it froze on.
+     */
+    @Override
+    public void store() {
+        for (int i = 0; i < loadedCount; i++) {
+            index.nodes[loaded[i]].setInventory(null);
+        }
+        for (int l = 0; l < beltStart.length; l++) {
+            long tick = frozenAt[l] == -1 ? now : frozenAt[l] - 1;
+            if (frozenAt[l] != -1 && now > recordedTo[l]) {
+                recordFault(l, recordedTo[l] + 1, now - recordedTo[l]);
+                recordedTo[l] = now;
+            }
+            for (int k = 0; k < count[l]; k++) {
+                int slot = slot(l, k);
+                long belt = offsets[slot] + tick;
+                if (receiver[l] == -1) {
+                    belt = Math.min(belt, beltCount[l] - 1 - k);
+                }
+                Item item = ItemRegistry.get(items[slot]);
+                index.nodes[beltStart[l] + (int) belt].setInventory(item);
+            }
+            if (producer[l] != -1) {
+                ((Producer) index.nodes[producer[l]]).setCounter((int) ((counter[l] + tick) % 2));
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                node.setPending(ItemRegistry.get(pending[l]));
+                node.setDelivered(delivered[l]);
+            }
+        }
+    }
+}
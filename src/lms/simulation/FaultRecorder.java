@@ -0,0 +1,254 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+
+/**
+ * Collects the faults found while ticking, in place of throwing a BadStateException for each
+ * of them. A fault is a Receiver holding an item other than its key. The line it ends is then
+ * skipped for that tick.
+ * <p>
+ * The most recent faults are kept in a ring buffer of preallocated arrays, one slot per record
+ * of (tick, transport id, expected item, actual item), so recording a fault allocates nothing.
+ * Older records are overwritten once the buffer is full, but {@link #getFaultCount()} counts
+ * every fault ever recorded.
+ * <p>
+ * In strict mode a fault is still recorded, and then escalated by throwing a
+ * BadStateException out of the tick. SimulationEngine abandons the whole step it happened in,
+ * with every strategy: strategies with their own copy of the state never store it, and the
+ * nodes changed by those that tick them in place, such as ObjectStrategy, are put back as
+ * they were before the step. The tick count does not include the step.
+ */
+public class FaultRecorder {
+
+    /**
+     * Number of records kept by default.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Tick of each record.
+     */
+    private final long[] ticks;
+
+    /**
+     * Id of the faulty Receiver of each record.
+     */
+    private final int[] transportIds;
+
+    /**
+     * ItemRegistry id of the expected item of each record.
+     */
+    private final int[] expected;
+
+    /**
+     * ItemRegistry id of the actual item of each record.
+     */
+    private final int[] actual;
+
+    /**
+     * Slot the next record is written to.
+     */
+    private int next;
+
+    /**
+     * Number of records held, at most the capacity.
+     */
+    private int size;
+
+    /**
+     * Number of faults recorded, including those no longer held.
+     */
+    private long count;
+
+    /**
+     * Engine tick count at the start of the current run of ticks.
+     */
+    private long runStart;
+
+    /**
+     * Whether faults are escalated to exceptions.
+     */
+    private boolean strict;
+
+    /**
+     * Constructs a new FaultRecorder holding DEFAULT_CAPACITY records.
+     */
+    public FaultRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new FaultRecorder holding the given number of records.
+     *
+     * @param capacity the number of most recent records to keep
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public FaultRecorder(int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.ticks = new long[capacity];
+        this.transportIds = new int[capacity];
+        this.expected = new int[capacity];
+        this.actual = new int[capacity];
+        this.strict = false;
+    }
+
+    /**
+     * Sets whether faults are escalated to a BadStateException once recorded.
+     *
+     * @param strict true to throw on every fault
+     */
+    public void setStrict(boolean strict) {
+        this.strict = strict;
+    }
+
+    /**
+     * Checks whether faults are escalated to a BadStateException once recorded.
+     *
+     * @return true if in strict mode
+     */
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * Marks the start of a run of ticks. Strategies number the ticks of a run from 1, and the
+     * recorder adds the given tick count to give each record its tick since the engine was
+     * created.
+     *
+     * @param tickCount ticks run by the engine before this run
+     */
+    void startRun(long tickCount) {
+        this.runStart = tickCount;
+    }
+
+    /**
+     * Records a fault.
+     *
+     * @param tick the tick of the current run the fault was found on, from 1
+     * @param transportId id of the faulty Receiver
+     * @param expectedId ItemRegistry id of the Receiver's key
+     * @param actualId ItemRegistry id of the item it held
+     * @throws BadStateException if in strict mode
+     */
+    public void record(long tick, int transportId, int expectedId, int actualId)
+            throws BadStateException {
+        record(tick, transportId, expectedId, actualId, 1);
+    }
+
+    /**
+     * Records a fault that repeats on the given number of consecutive ticks, as found by
+     * strategies that skip ticks. It counts as that many faults, but is held as a single record
+     * of its first tick.
+     *
+     * @param tick the tick of the current run the fault was first found on, from 1
+     * @param transportId id of the faulty Receiver
+     * @param expectedId ItemRegistry id of the Receiver's key
+     * @param actualId ItemRegistry id of the item it held
+     * @param repeats number of ticks the fault was found on, at least 1
+     * @throws BadStateException if in strict mode
+     */
+    public synchronized void record(long tick, int transportId, int expectedId, int actualId,
+                                    long repeats) throws BadStateException {
+        ticks[next] = runStart + tick;
+        transportIds[next] = transportId;
+        expected[next] = expectedId;
+        actual[next] = actualId;
+        next = next + 1 == ticks.length ? 0 : next + 1;
+        size = Math.min(size + 1, ticks.length);
+        count += repeats;
+        if (strict) {
+            throw new BadStateException("Receiver inventory != key value");
+        }
+    }
+
+    /**
+     * Returns the number of faults recorded, including those no longer held.
+     *
+     * @return total number of faults
+     */
+    public synchronized long getFaultCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of records currently held.
+     *
+     * @return number of records, at most the capacity
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Helper Method:
+     * Returns the slot of a held record.
+     *
+     * @param index index of the record, from 0 for the oldest held
+     * @return its slot in the arrays
+     * @throws IndexOutOfBoundsException if index is not a valid record index
+     */
+    private int slot(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int slot = next - size + index;
+        return slot < 0 ? slot + ticks.length : slot;
+    }
+
+    /**
+     * Returns the tick a held record was found on, counted from the creation of the engine.
+     *
+     * @param index index of the record, from 0 for the oldest held
+     * @return the tick of the fault
+     * @throws IndexOutOfBoundsException if index is not a valid record index
+     */
+    public synchronized long getTick(int index) throws IndexOutOfBoundsException {
+        return ticks[slot(index)];
+    }
+
+    /**
+     * Returns the id of the Receiver of a held record.
+     *
+     * @param index index of the record, from 0 for the oldest held
+     * @return the Receiver's transport id
+     * @throws IndexOutOfBoundsException if index is not a valid record index
+     */
+    public synchronized int getTransportId(int index) throws IndexOutOfBoundsException {
+        return transportIds[slot(index)];
+    }
+
+    /**
+     * Returns the item the Receiver of a held record expected.
+     *
+     * @param index index of the record, from 0 for the oldest held
+     * @return the Receiver's key
+     * @throws IndexOutOfBoundsException if index is not a valid record index
+     */
+    public synchronized Item getExpected(int index) throws IndexOutOfBoundsException {
+        return ItemRegistry.get(expected[slot(index)]);
+    }
+
+    /**
+     * Returns the item the Receiver of a held record actually held.
+     *
+     * @param index index of the record, from 0 for the oldest held
+     * @return the item it held
+     * @throws IndexOutOfBoundsException if index is not a valid record index
+     */
+    public synchronized Item getActual(int index) throws IndexOutOfBoundsException {
+        return ItemRegistry.get(actual[slot(index)]);
+    }
+
+    /**
+     * Removes every record and resets the fault count.
+     */
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        count = 0;
+    }
+}
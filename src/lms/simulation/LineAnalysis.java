@@ -0,0 +1,272 @@
+package lms.simulation;
+
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Junction;
+import lms.logistics.container.Producer;
+import lms.logistics.container.ProductionRate;
+import lms.logistics.container.Receiver;
+
+/**
+ * Classifies every line of a compiled LineSchedule as {@link LineState#FLOWING flowing},
+ * {@link LineState#BLOCKED blocked} or {@link LineState#UNREACHABLE unreachable}, from the
+ * nodes at its ends. Segments that feed or are fed by a Junction depend on the rest of the
+ * graph, so they are always counted as flowing.
+ * <p>
+ * Some lines can also be found to be inert, meaning no tick will ever change their items:
+ * <ul>
+ *     <li>an unreachable line with no item on it</li>
+ *     <li>a blocked line with no Receiver whose belts are all full</li>
+ * </ul>
+ * These are dropped from the schedule made by {@link #prune()}. A blocked line ending in a
+ * Receiver with a different key is kept, so that its faults are still recorded. A pruned
+ * Producer's counter no longer moves, which is harmless since it can never place an item.
+ * <p>
+ * Whether a line is inert depends on the items on it, so it holds only while nothing outside
+ * the engine changes them: emptying a full dead end, for example, makes it live again.
+ * {@link #isCurrent()} checks the inert lines again, so that a pruned schedule can be
+ * replaced before it is ticked. Like the schedule, the analysis must also be made again if
+ * the layout changes.
+ */
+public class LineAnalysis {
+
+    /**
+     * Schedule that was analysed.
+     */
+    private final LineSchedule schedule;
+
+    /**
+     * Class of each line.
+     */
+    private final LineState[] states;
+
+    /**
+     * Whether each line can be left out of the tick schedule.
+     */
+    private final boolean[] inert;
+
+    /**
+     * Constructs the analysis of every line of a schedule.
+     *
+     * @param schedule the schedule to analyse
+     * @throws IllegalArgumentException if schedule is null
+     */
+    public LineAnalysis(LineSchedule schedule) throws IllegalArgumentException {
+        if (schedule == null) {
+            throw new IllegalArgumentException();
+        }
+        this.schedule = schedule;
+        Transport[][] lines = schedule.lines();
+        this.states = new LineState[lines.length];
+        this.inert = new boolean[lines.length];
+        for (int l = 0; l < lines.length; l++) {
+            Transport[] line = lines[l];
+            states[l] = classify(line);
+            inert[l] = holdsStill(states[l], line);
+        }
+    }
+
+    /**
+     * Returns the number of lines that were analysed.
+     *
+     * @return number of lines in the schedule
+     */
+    public int getLineCount() {
+        return states.length;
+    }
+
+    /**
+     * Returns the class of a line.
+     *
+     * @param line index of the line in the schedule
+     * @return whether the line is flowing, blocked or unreachable
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public LineState getState(int line) throws IndexOutOfBoundsException {
+        return states[line];
+    }
+
+    /**
+     * Checks whether a line is left out of the schedule made by prune.
+     *
+     * @param line index of the line in the schedule
+     * @return true if no tick will change the items on the line
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public boolean isInert(int line) throws IndexOutOfBoundsException {
+        return inert[line];
+    }
+
+    /**
+     * Counts the lines of a class.
+     *
+     * @param state the class to count
+     * @return number of lines of that class
+     */
+    public int count(LineState state) {
+        int count = 0;
+        for (LineState other : states) {
+            if (other == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether every line found inert still is. This only stops being true when items
+     * on an inert line are changed from outside the engine, since no tick changes them.
+     *
+     * @return true if the schedule made by prune still ticks every line that can change
+     */
+    public boolean isCurrent() {
+        Transport[][] lines = schedule.lines();
+        for (int l = 0; l < lines.length; l++) {
+            if (inert[l] && !holdsStill(states[l], lines[l])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the analysed schedule without its inert lines.
+     *
+     * @return a schedule of the remaining lines, or the analysed schedule if none is inert
+     */
+    public LineSchedule prune() {
+        for (boolean dropped : inert) {
+            if (dropped) {
+                return schedule.without(inert);
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * Returns the report of every line, one per text line, giving its index, the ids of its
+     * head and tail, its class and whether it is inert, e.g. "0: 1-5 FLOWING".
+     *
+     * @return the report
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        Transport[][] lines = schedule.lines();
+        for (int l = 0; l < lines.length; l++) {
+            Transport[] line = lines[l];
+            report.append(l).append(": ").append(line[line.length - 1].getId()).append('-')
+                    .append(line[0].getId()).append(' ').append(states[l]);
+            if (inert[l]) {
+                report.append(" inert");
+            }
+            report.append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Helper Method:
+     * Works out the class of a line from its head and tail.
+     *
+     * @param line the nodes of the line, from tail to head
+     * @return the class of the line
+     */
+    private static LineState classify(Transport[] line) {
+        Transport tail = line[0];
+        Transport head = line[line.length - 1];
+        if (touchesJunction(head, tail)) {
+            return LineState.FLOWING;
+        }
+        if (!(head instanceof Producer producer) || !canEmit(producer.getRate())) {
+            return LineState.UNREACHABLE;
+        }
+        if (tail instanceof Receiver receiver && receiver.accepts(producer.getKey())) {
+            return LineState.FLOWING;
+        }
+        return LineState.BLOCKED;
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether no tick can change the items on a line, given its class and the items it
+     * holds now.
+     *
+     * @param state the class of the line
+     * @param line the nodes of the line, from tail to head
+     * @return true if the line is unreachable and empty, or blocked with no Receiver and full
+     */
+    private static boolean holdsStill(LineState state, Transport[] line) {
+        if (state == LineState.UNREACHABLE) {
+            return isEmpty(line);
+        }
+        return state == LineState.BLOCKED && !(line[0] instanceof Receiver) && isFull(line);
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether a line is, or is linked to, a Junction.
+     *
+     * @param head first node of the line
+     * @param tail last node of the line
+     * @return true if either end is a Junction or linked to one
+     */
+    private static boolean touchesJunction(Transport head, Transport tail) {
+        Path previous = head.getPath().getPrevious();
+        Path next = tail.getPath().getNext();
+        return head instanceof Junction || tail instanceof Junction
+                || (previous != null && previous.getNode() instanceof Junction)
+                || (next != null && next.getNode() instanceof Junction);
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether any position of a rate's cycle makes an item.
+     *
+     * @param rate the rate to check
+     * @return true if a Producer with this rate ever makes an item
+     */
+    private static boolean canEmit(ProductionRate rate) {
+        for (int position = 0; position < rate.getPeriod(); position++) {
+            if (rate.emitsAt(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether no node of a line holds an item, counting a Receiver's pending item.
+     *
+     * @param line the nodes of the line
+     * @return true if the line is empty
+     */
+    private static boolean isEmpty(Transport[] line) {
+        for (Transport node : line) {
+            Item item = node instanceof Receiver receiver ? receiver.getPending()
+                    : node instanceof Producer ? null : node.getInventory();
+            if (item != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether every node of a line other than its Producer has no room for an item.
+     *
+     * @param line the nodes of the line, from tail to head
+     * @return true if the line is full
+     */
+    private static boolean isFull(Transport[] line) {
+        for (int i = 0; i < line.length - 1; i++) {
+            if (line[i].canAccept()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
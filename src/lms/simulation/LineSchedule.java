@@ -0,0 +1,278 @@
+package lms.simulation;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Junction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The compiled tick order of every production line on a GameGrid. Lines are discovered once from
+ * the Path links, and each is stored as an array of its Transport nodes ordered from the tail
+ * (usually a Receiver) back to the head (usually a Producer), which is the order they must be
+ * ticked in.
+ * <p>
+ * A grid holding {@link Junction} nodes is a directed acyclic graph rather than a set of
+ * chains. It is split into segments, each a chain between junctions, with every Junction a
+ * segment of its own. The segments are ordered so that each comes after every segment it
+ * feeds, which is a reverse topological order of the graph, and are stored as the lines.
+ * <p>
+ * A schedule remembers the topology version of the Path links and the modification count of
+ * the grid it was compiled from, so callers can check {@link #isStale(GameGrid)} and recompile
+ * only when the factory layout has actually changed.
+ */
+public class LineSchedule {
+
+    /**
+     * Transport nodes of each line, ordered from tail to head.
+     */
+    private final Transport[][] lines;
+
+    /**
+     * Path topology version at the time of compilation.
+     */
+    private final int topologyVersion;
+
+    /**
+     * Grid modification count at the time of compilation.
+     */
+    private final int gridVersion;
+
+    /**
+     * Constructs a new LineSchedule from already ordered lines.
+     *
+     * @param lines Transport nodes of each line, ordered from tail to head
+     * @param topologyVersion Path topology version the lines were read at
+     * @param gridVersion grid modification count the lines were read at
+     */
+    private LineSchedule(Transport[][] lines, int topologyVersion, int gridVersion) {
+        this.lines = lines;
+        this.topologyVersion = topologyVersion;
+        this.gridVersion = gridVersion;
+    }
+
+    /**
+     * Compiles the production lines of the given grid. Every Transport on the grid belongs to
+     * exactly one line, which is found by walking back from the line's tail. Lines are ordered
+     * by the id of their tail node, except that a line feeding a Junction comes after the
+     * lines the Junction feeds.
+     *
+     * @param grid the grid to compile
+     * @return the compiled schedule
+     * @throws IllegalArgumentException if grid is null
+     */
+    public static LineSchedule compile(GameGrid grid) throws IllegalArgumentException {
+        if (grid == null) {
+            throw new IllegalArgumentException();
+        }
+        int topologyVersion = Path.getTopologyVersion();
+        int gridVersion = grid.getModificationCount();
+        List<Transport> tails = new ArrayList<>();
+        boolean junctions = false;
+        for (GridComponent component : grid.getGrid().values()) {
+            if (component instanceof Junction) {
+                junctions = true;
+            }
+            if (component instanceof Transport transport
+                    && transport.getPath().getNext() == null) {
+                tails.add(transport);
+            }
+        }
+        if (junctions) {
+            return new LineSchedule(compileSegments(grid), topologyVersion, gridVersion);
+        }
+        tails.sort(Comparator.comparingInt(Transport::getId));
+
+        Transport[][] lines = new Transport[tails.size()][];
+        List<Transport> line = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            line.clear();
+            Path path = tails.get(i).getPath();
+            while (path != null) {
+                line.add(path.getNode());
+                path = path.getPrevious();
+            }
+            lines[i] = line.toArray(new Transport[0]);
+        }
+        return new LineSchedule(lines, topologyVersion, gridVersion);
+    }
+
+    /**
+     * Helper Method:
+     * Splits a grid holding junctions into segments and orders them so that every segment
+     * comes after the segments it feeds. Segments that are ready are taken in order of the id
+     * of their tail. Segments on a cycle, which have no such order, are added last.
+     *
+     * @param grid the grid to compile
+     * @return the nodes of each segment, ordered from tail to head
+     */
+    private static Transport[][] compileSegments(GameGrid grid) {
+        List<Transport> tails = new ArrayList<>();
+        for (GridComponent component : grid.getGrid().values()) {
+            if (component instanceof Transport transport && isSegmentTail(transport)) {
+                tails.add(transport);
+            }
+        }
+        tails.sort(Comparator.comparingInt(Transport::getId));
+
+        /* walk each segment back from its tail, stopping at a Junction */
+        List<Transport[]> segments = new ArrayList<>();
+        Map<Transport, Integer> segmentOf = new IdentityHashMap<>();
+        List<Transport> line = new ArrayList<>();
+        for (Transport tail : tails) {
+            line.clear();
+            Transport node = tail;
+            while (node != null && !segmentOf.containsKey(node)) {
+                line.add(node);
+                segmentOf.put(node, segments.size());
+                Path previous = node.getPath().getPrevious();
+                if (node instanceof Junction || previous == null
+                        || previous.getNode() instanceof Junction) {
+                    break;
+                }
+                node = previous.getNode();
+            }
+            segments.add(line.toArray(new Transport[0]));
+        }
+
+        /* a segment is ready once every segment its tail feeds has been ordered */
+        int count = segments.size();
+        List<List<Integer>> feeders = new ArrayList<>();
+        int[] waiting = new int[count];
+        for (int s = 0; s < count; s++) {
+            feeders.add(new ArrayList<>());
+        }
+        for (int s = 0; s < count; s++) {
+            for (Transport fed : fedBy(segments.get(s)[0])) {
+                Integer target = segmentOf.get(fed);
+                if (target != null) {
+                    feeders.get(target).add(s);
+                    waiting[s]++;
+                }
+            }
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+                Comparator.comparingInt(s -> segments.get(s)[0].getId()));
+        for (int s = 0; s < count; s++) {
+            if (waiting[s] == 0) {
+                ready.add(s);
+            }
+        }
+        List<Transport[]> ordered = new ArrayList<>(count);
+        boolean[] done = new boolean[count];
+        while (!ready.isEmpty()) {
+            int s = ready.poll();
+            ordered.add(segments.get(s));
+            done[s] = true;
+            for (int feeder : feeders.get(s)) {
+                if (--waiting[feeder] == 0) {
+                    ready.add(feeder);
+                }
+            }
+        }
+        for (int s = 0; s < count; s++) {
+            if (!done[s]) {
+                ordered.add(segments.get(s));
+            }
+        }
+        return ordered.toArray(new Transport[0][]);
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether a node ends a segment: it is a Junction, outputs to a Junction, or has no
+     * output.
+     *
+     * @param node the node to check
+     * @return true if the node is the tail of its segment
+     */
+    private static boolean isSegmentTail(Transport node) {
+        Path next = node.getPath().getNext();
+        return node instanceof Junction || next == null || next.getNode() instanceof Junction;
+    }
+
+    /**
+     * Helper Method:
+     * Returns the nodes a segment's tail outputs to.
+     *
+     * @param tail the tail of a segment
+     * @return every output of a Junction, otherwise the single output, if any
+     */
+    private static List<Transport> fedBy(Transport tail) {
+        List<Transport> fed = new ArrayList<>();
+        if (tail instanceof Junction junction) {
+            for (Path output : junction.getOutputs()) {
+                fed.add(output.getNode());
+            }
+        } else if (tail.getPath().getNext() != null) {
+            fed.add(tail.getPath().getNext().getNode());
+        }
+        return fed;
+    }
+
+    /**
+     * Checks whether the Path links or the components of the given grid have changed since
+     * this schedule was compiled.
+     *
+     * @param grid the grid this schedule was compiled from
+     * @return true if the schedule must be recompiled before it is used again
+     */
+    public boolean isStale(GameGrid grid) {
+        return topologyVersion != Path.getTopologyVersion()
+                || gridVersion != grid.getModificationCount();
+    }
+
+    /**
+     * Returns the number of production lines in this schedule.
+     *
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    /**
+     * Returns the Transport nodes of a line in tick order, from its tail to its head.
+     *
+     * @param index index of the line, from 0 to getLineCount() - 1
+     * @return an unmodifiable list of the line's nodes
+     * @throws IndexOutOfBoundsException if index is not a valid line index
+     */
+    public List<Transport> getLine(int index) throws IndexOutOfBoundsException {
+        return List.of(lines[index]);
+    }
+
+    /**
+     * Makes a schedule of the lines of this one that are not dropped, in the same order and
+     * with the same versions, so it goes stale together with this one.
+     *
+     * @param dropped whether each line of this schedule is left out
+     * @return the schedule of the remaining lines
+     */
+    LineSchedule without(boolean[] dropped) {
+        List<Transport[]> kept = new ArrayList<>();
+        for (int l = 0; l < lines.length; l++) {
+            if (!dropped[l]) {
+                kept.add(lines[l]);
+            }
+        }
+        return new LineSchedule(kept.toArray(new Transport[0][]), topologyVersion, gridVersion);
+    }
+
+    /**
+     * Gives engines in this package direct access to the compiled lines. The arrays must not
+     * be modified.
+     *
+     * @return Transport nodes of each line, ordered from tail to head
+     */
+    Transport[][] lines() {
+        return lines;
+    }
+}
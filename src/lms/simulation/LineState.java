@@ -0,0 +1,23 @@
+package lms.simulation;
+
+/**
+ * enum classifying a production line by whether it can ever deliver an item
+ *
+ * @see LineAnalysis
+ */
+public enum LineState {
+    /**
+     * Items enter the line and reach a Receiver that takes them.
+     */
+    FLOWING,
+    /**
+     * Items enter the line but can never be delivered, because it does not end in a
+     * Receiver or ends in a Receiver with a different key.
+     */
+    BLOCKED,
+    /**
+     * No item ever enters the line, because it does not start with a Producer or its
+     * Producer's rate never makes an item.
+     */
+    UNREACHABLE;
+}
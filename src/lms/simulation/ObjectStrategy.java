@@ -0,0 +1,46 @@
+package lms.simulation;
+
+import lms.logistics.Transport;
+
+/**
+ * The reference TickStrategy, which ticks the Transport nodes themselves through
+ * {@link Transport#tick()}, following a compiled TickPlan so that each kind of node is ticked
+ * from its own loop. Its state is always the state of the grid, so load and store do nothing.
+ */
+public class ObjectStrategy implements TickStrategy {
+
+    /**
+     * Compiled plan of the scheduled lines.
+     */
+    private final TickPlan plan;
+
+    /**
+     * Constructs a new ObjectStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     */
+    public ObjectStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException {
+        this.plan = new TickPlan(schedule, faults);
+    }
+
+    @Override
+    public void load() {
+        plan.reset();
+    }
+
+    /**
+     * Ticks every line from its tail. A line whose Receiver is in a bad state is recorded and
+     * skipped without affecting the other lines.
+     */
+    @Override
+    public void tick() {
+        plan.tick();
+    }
+
+    @Override
+    public void store() {
+    }
+}
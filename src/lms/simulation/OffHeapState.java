@@ -0,0 +1,620 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+/**
+ * Factory state held outside the Java heap, for factories too large to build from one Transport
+ * and one Path object per cell. Every node is a fixed size record in a direct ByteBuffer:
+ * <ul>
+ *     <li>inventory - ItemRegistry id of the item held, 0 if empty; a Receiver's pending item</li>
+ *     <li>key - ItemRegistry id of a Producer's or Receiver's key, 0 for a Belt</li>
+ *     <li>id - transport id of the node</li>
+ *     <li>kind - one of the TopologyIndex KIND constants</li>
+ *     <li>counter - tick parity of a Producer</li>
+ *     <li>flags - whether the node is the head or the tail of its line</li>
+ * </ul>
+ * Lines are simple chains laid out from head to tail in consecutive records, so a node's links
+ * are the records either side of it within its line. A second buffer holds the first and end
+ * record of each line, and the count of items its Receiver has delivered.
+ * <p>
+ * A node therefore costs {@value #NODE_BYTES} bytes and no objects. {@link #getNode(int)}
+ * returns a thin view of a record that answers getInventory and getPath like any other
+ * Transport, for code written against the object model; views are made on demand and hold no
+ * state of their own. An OffHeapState is ticked by an OffHeapStrategy.
+ * <p>
+ * Direct buffers are limited by -XX:MaxDirectMemorySize rather than by the heap, but the limit
+ * defaults to the maximum heap size. Ten million nodes take 160 MB of direct memory, so to run
+ * them with a small heap the limit must be raised to match, e.g.
+ * {@code java -Xmx32m -XX:MaxDirectMemorySize=256m}. Otherwise the constructor fails with an
+ * OutOfMemoryError even though the heap is nearly empty.
+ *
+ * @see OffHeapStrategy
+ */
+public class OffHeapState {
+
+    /**
+     * Size in bytes of each node record.
+     */
+    public static final int NODE_BYTES = 16;
+
+    /**
+     * Size in bytes of each line record.
+     */
+    static final int LINE_BYTES = 16;
+
+    /**
+     * Offset of the inventory in a node record.
+     */
+    static final int INVENTORY = 0;
+
+    /**
+     * Offset of the key in a node record.
+     */
+    static final int KEY = 4;
+
+    /**
+     * Offset of the transport id in a node record.
+     */
+    static final int ID = 8;
+
+    /**
+     * Offset of the kind in a node record.
+     */
+    static final int KIND = 12;
+
+    /**
+     * Offset of the Producer tick parity in a node record.
+     */
+    static final int COUNTER = 13;
+
+    /**
+     * Offset of the flags in a node record.
+     */
+    static final int FLAGS = 14;
+
+    /**
+     * Flag set on the head of a line.
+     */
+    static final byte FLAG_HEAD = 1;
+
+    /**
+     * Flag set on the tail of a line.
+     */
+    static final byte FLAG_TAIL = 2;
+
+    /**
+     * Offset of the first node in a line record.
+     */
+    static final int LINE_START = 0;
+
+    /**
+     * Offset of the end node (exclusive) in a line record.
+     */
+    static final int LINE_END = 4;
+
+    /**
+     * Offset of the Receiver's delivered count in a line record.
+     */
+    static final int DELIVERED = 8;
+
+    /**
+     * Node records.
+     */
+    final ByteBuffer nodes;
+
+    /**
+     * Line records.
+     */
+    final ByteBuffer lines;
+
+    /**
+     * Maximum number of nodes.
+     */
+    private final int nodeCapacity;
+
+    /**
+     * Maximum number of lines.
+     */
+    private final int lineCapacity;
+
+    /**
+     * Number of nodes added.
+     */
+    private int nodeCount;
+
+    /**
+     * Number of lines added.
+     */
+    private int lineCount;
+
+    /**
+     * First node of the line being added, or -1 if no line is being added.
+     */
+    private int open;
+
+    /**
+     * Transport id given to the next node added by addLine.
+     */
+    private int nextId;
+
+    /**
+     * Constructs a new, empty OffHeapState with room for the given number of nodes and lines.
+     *
+     * @param nodeCapacity maximum number of nodes
+     * @param lineCapacity maximum number of lines
+     * @throws IllegalArgumentException if either capacity is negative, or too large for a
+     * single buffer
+     */
+    public OffHeapState(int nodeCapacity, int lineCapacity) throws IllegalArgumentException {
+        if (nodeCapacity < 0 || lineCapacity < 0
+                || nodeCapacity > Integer.MAX_VALUE / NODE_BYTES
+                || lineCapacity > Integer.MAX_VALUE / LINE_BYTES) {
+            throw new IllegalArgumentException();
+        }
+        this.nodeCapacity = nodeCapacity;
+        this.lineCapacity = lineCapacity;
+        this.nodes = ByteBuffer.allocateDirect(nodeCapacity * NODE_BYTES)
+                .order(ByteOrder.nativeOrder());
+        this.lines = ByteBuffer.allocateDirect(lineCapacity * LINE_BYTES)
+                .order(ByteOrder.nativeOrder());
+        this.nodeCount = 0;
+        this.lineCount = 0;
+        this.open = -1;
+        this.nextId = 1;
+    }
+
+    /**
+     * Adds a line made of an optional Producer, a number of Belts and an optional Receiver,
+     * all empty except for the Producer, which holds its key. The nodes are given consecutive
+     * transport ids, starting from 1 for the first node ever added.
+     *
+     * @param product the item the Producer makes, or null for a line without one
+     * @param belts number of Belts between the Producer and the Receiver
+     * @param key the item the Receiver accepts, or null for a line without one
+     * @return the index of the new line
+     * @throws IllegalArgumentException if belts is negative, the line would be empty, or there
+     * is no room left for it
+     */
+    public int addLine(Item product, int belts, Item key) throws IllegalArgumentException {
+        int size = (product == null ? 0 : 1) + (key == null ? 0 : 1);
+        if (belts < 0 || size + belts == 0 || belts > nodeCapacity - nodeCount - size
+                || lineCount == lineCapacity || open != -1) {
+            throw new IllegalArgumentException();
+        }
+        startLine();
+        if (product != null) {
+            int item = ItemRegistry.intern(product).getId();
+            int node = append(TopologyIndex.KIND_PRODUCER, nextId++, item);
+            setInventoryId(node, item);
+        }
+        for (int b = 0; b < belts; b++) {
+            append(TopologyIndex.KIND_BELT, nextId++, 0);
+        }
+        if (key != null) {
+            append(TopologyIndex.KIND_RECEIVER, nextId++, ItemRegistry.intern(key).getId());
+        }
+        return endLine();
+    }
+
+    /**
+     * Starts a new line, to which nodes are added with append.
+     */
+    void startLine() {
+        open = nodeCount;
+    }
+
+    /**
+     * Adds an empty node to the end of the line being added.
+     *
+     * @param kind one of the TopologyIndex KIND constants
+     * @param id transport id of the node
+     * @param key ItemRegistry id of its key, 0 for none
+     * @return index of the node
+     */
+    int append(byte kind, int id, int key) {
+        int at = nodeCount++ * NODE_BYTES;
+        nodes.putInt(at + INVENTORY, 0);
+        nodes.putInt(at + KEY, key);
+        nodes.putInt(at + ID, id);
+        nodes.put(at + KIND, kind);
+        nodes.put(at + COUNTER, (byte) 0);
+        nodes.put(at + FLAGS, nodeCount - 1 == open ? FLAG_HEAD : 0);
+        return nodeCount - 1;
+    }
+
+    /**
+     * Finishes the line being added.
+     *
+     * @return index of the line
+     */
+    int endLine() {
+        int tail = (nodeCount - 1) * NODE_BYTES + FLAGS;
+        nodes.put(tail, (byte) (nodes.get(tail) | FLAG_TAIL));
+        int at = lineCount * LINE_BYTES;
+        lines.putInt(at + LINE_START, open);
+        lines.putInt(at + LINE_END, nodeCount);
+        lines.putLong(at + DELIVERED, 0);
+        open = -1;
+        return lineCount++;
+    }
+
+    /**
+     * Returns the number of nodes added.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of lines added.
+     *
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the index of the head of the given line.
+     *
+     * @param line index of the line
+     * @return the first node of the line
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public int lineStart(int line) throws IndexOutOfBoundsException {
+        return lines.getInt(lineRecord(line) + LINE_START);
+    }
+
+    /**
+     * Returns one past the index of the tail of the given line.
+     *
+     * @param line index of the line
+     * @return the end node of the line (exclusive)
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public int lineEnd(int line) throws IndexOutOfBoundsException {
+        return lines.getInt(lineRecord(line) + LINE_END);
+    }
+
+    /**
+     * Returns the number of items delivered by the Receiver at the tail of the given line.
+     *
+     * @param line index of the line
+     * @return items delivered, 0 if the line has no Receiver
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    public long getDelivered(int line) throws IndexOutOfBoundsException {
+        return lines.getLong(lineRecord(line) + DELIVERED);
+    }
+
+    /**
+     * Sets the number of items delivered by the Receiver at the tail of the given line.
+     *
+     * @param line index of the line
+     * @param delivered items delivered
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    void setDelivered(int line, long delivered) throws IndexOutOfBoundsException {
+        lines.putLong(lineRecord(line) + DELIVERED, delivered);
+    }
+
+    /**
+     * Returns the kind of the node at the given index.
+     *
+     * @param index node index
+     * @return one of the TopologyIndex KIND constants
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public byte kind(int index) throws IndexOutOfBoundsException {
+        return nodes.get(nodeRecord(index) + KIND);
+    }
+
+    /**
+     * Returns the transport id of the node at the given index.
+     *
+     * @param index node index
+     * @return the node's id
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public int getId(int index) throws IndexOutOfBoundsException {
+        return nodes.getInt(nodeRecord(index) + ID);
+    }
+
+    /**
+     * Returns the item held by the node at the given index. For a Receiver this is its pending
+     * item.
+     *
+     * @param index node index
+     * @return the item, or null if the node is empty
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public Item getInventory(int index) throws IndexOutOfBoundsException {
+        return ItemRegistry.get(nodes.getInt(nodeRecord(index) + INVENTORY));
+    }
+
+    /**
+     * Sets the item held by the node at the given index. For a Receiver this is its pending
+     * item.
+     *
+     * @param index node index
+     * @param item the item, or null to empty the node
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public void setInventory(int index, Item item) throws IndexOutOfBoundsException {
+        setInventoryId(index, item == null ? 0 : ItemRegistry.intern(item).getId());
+    }
+
+    /**
+     * Sets the item id held by the node at the given index.
+     *
+     * @param index node index
+     * @param item ItemRegistry id of the item, 0 for none
+     */
+    void setInventoryId(int index, int item) {
+        nodes.putInt(nodeRecord(index) + INVENTORY, item);
+    }
+
+    /**
+     * Returns the key of the Producer or Receiver at the given index.
+     *
+     * @param index node index
+     * @return the key, or null for a Belt
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public Item getKey(int index) throws IndexOutOfBoundsException {
+        return ItemRegistry.get(nodes.getInt(nodeRecord(index) + KEY));
+    }
+
+    /**
+     * Returns the tick parity of the Producer at the given index.
+     *
+     * @param index node index
+     * @return 0 or 1, always 0 for other kinds of node
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public int getCounter(int index) throws IndexOutOfBoundsException {
+        return nodes.get(nodeRecord(index) + COUNTER);
+    }
+
+    /**
+     * Sets the tick parity of the Producer at the given index.
+     *
+     * @param index node index
+     * @param counter 0 or 1
+     */
+    void setCounter(int index, int counter) {
+        nodes.put(nodeRecord(index) + COUNTER, (byte) counter);
+    }
+
+    /**
+     * Returns a view of the node at the given index, which reads and writes this state. The
+     * view's Path links lead to views of the nodes either side of it in its line. Views cannot
+     * be ticked or relinked.
+     *
+     * @param index node index
+     * @return a new view of the node
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    public Transport getNode(int index) throws IndexOutOfBoundsException {
+        return new NodeView(this, index);
+    }
+
+    /**
+     * Helper Method:
+     * Returns the offset of a node record, checking the index.
+     *
+     * @param index node index
+     * @return byte offset of the record
+     * @throws IndexOutOfBoundsException if index is not a valid node index
+     */
+    private int nodeRecord(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= nodeCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index * NODE_BYTES;
+    }
+
+    /**
+     * Helper Method:
+     * Returns the offset of a line record, checking the index.
+     *
+     * @param line line index
+     * @return byte offset of the record
+     * @throws IndexOutOfBoundsException if line is not a valid line index
+     */
+    private int lineRecord(int line) throws IndexOutOfBoundsException {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException(line);
+        }
+        return line * LINE_BYTES;
+    }
+
+    /**
+     * Helper Method:
+     * Checks a flag of the node at the given index.
+     *
+     * @param index node index
+     * @param flag FLAG_HEAD or FLAG_TAIL
+     * @return true if the flag is set
+     */
+    private boolean hasFlag(int index, byte flag) {
+        return (nodes.get(nodeRecord(index) + FLAGS) & flag) != 0;
+    }
+
+    /**
+     * A Transport whose state is a record of an OffHeapState.
+     */
+    private static class NodeView extends Transport {
+
+        /**
+         * State holding the record.
+         */
+        private final OffHeapState state;
+
+        /**
+         * Index of the record.
+         */
+        private final int index;
+
+        /**
+         * Links of this view.
+         */
+        private final ViewPath path;
+
+        /**
+         * Constructs a new view of a record.
+         *
+         * @param state state holding the record
+         * @param index index of the record
+         * @throws IndexOutOfBoundsException if index is not a valid node index
+         */
+        NodeView(OffHeapState state, int index) throws IndexOutOfBoundsException {
+            super(state.getId(index));
+            this.state = state;
+            this.index = index;
+            this.path = new ViewPath(this);
+        }
+
+        @Override
+        public String getEncoding() {
+            return switch (state.kind(index)) {
+                case TopologyIndex.KIND_PRODUCER -> "p";
+                case TopologyIndex.KIND_RECEIVER -> "r";
+                default -> "b";
+            };
+        }
+
+        @Override
+        public Item getInventory() {
+            return state.getInventory(index);
+        }
+
+        @Override
+        public void setInventory(Item inventory) {
+            state.setInventory(index, inventory);
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public Path getInput() {
+            return path.getPrevious();
+        }
+
+        @Override
+        public Path getOutput() {
+            return path.getNext();
+        }
+
+        @Override
+        public void setInput(Path input) {
+            throw new UnsupportedActionException();
+        }
+
+        @Override
+        public void setOutput(Path output) {
+            throw new UnsupportedActionException();
+        }
+
+        @Override
+        public void tick() {
+            throw new UnsupportedActionException("OffHeapState is ticked by OffHeapStrategy");
+        }
+    }
+
+    /**
+     * The Path of a NodeView, following the record layout instead of stored links.
+     */
+    private static class ViewPath extends Path {
+
+        /**
+         * View this Path belongs to.
+         */
+        private final NodeView view;
+
+        /**
+         * Constructs the Path of a view.
+         *
+         * @param view the view
+         */
+        ViewPath(NodeView view) {
+            super(view);
+            this.view = view;
+        }
+
+        @Override
+        public Path getPrevious() {
+            if (view.state.hasFlag(view.index, FLAG_HEAD)) {
+                return null;
+            }
+            return view.state.getNode(view.index - 1).getPath();
+        }
+
+        @Override
+        public Path getNext() {
+            if (view.state.hasFlag(view.index, FLAG_TAIL)) {
+                return null;
+            }
+            return view.state.getNode(view.index + 1).getPath();
+        }
+
+        @Override
+        public Path head() {
+            int head = view.index;
+            while (!view.state.hasFlag(head, FLAG_HEAD)) {
+                head--;
+            }
+            return view.state.getNode(head).getPath();
+        }
+
+        @Override
+        public Path tail() {
+            int tail = view.index;
+            while (!view.state.hasFlag(tail, FLAG_TAIL)) {
+                tail++;
+            }
+            return view.state.getNode(tail).getPath();
+        }
+
+        @Override
+        public void applyAll(Consumer<Transport> consumer) {
+            for (Path path = tail(); path != null; path = path.getPrevious()) {
+                consumer.accept(path.getNode());
+            }
+        }
+
+        @Override
+        public void setNext(Path path) {
+            throw new UnsupportedActionException();
+        }
+
+        @Override
+        public void setPrevious(Path path) {
+            throw new UnsupportedActionException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ViewPath other && other.view.state == view.state
+                    && other.view.index == view.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(view.state) * 31 + view.index;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Transport;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A TickStrategy over an {@link OffHeapState}, following the same rules as ArrayStrategy but
+ * reading and writing the node records outside the heap.
+ * <p>
+ * It can be used in two ways. Made from a LineSchedule, it copies the grid into a state of its
+ * own on load and back on store, like the other strategies. Made from an existing
+ * OffHeapState, for example one built line by line with {@link OffHeapState#addLine}, there is
+ * no grid behind it, so load and store do nothing and the state is read through its own
+ * accessors and views. This is how factories of tens of millions of nodes are simulated with
+ * a heap that does not grow with them.
+ */
+public class OffHeapStrategy implements TickStrategy {
+
+    /**
+     * State being ticked.
+     */
+    private final OffHeapState state;
+
+    /**
+     * Transport node of each record, or null if the state has no grid behind it.
+     */
+    private final Transport[] grid;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    private long ticks;
+
+    /**
+     * Constructs a new OffHeapStrategy copying the given schedule into a state of its own.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public OffHeapStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        TopologyIndex index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("OffHeapStrategy only ticks simple lines");
+        }
+        this.faults = faults;
+        this.grid = index.nodes;
+        this.state = new OffHeapState(index.size(), index.getLineCount());
+        for (int l = 0; l < index.getLineCount(); l++) {
+            state.startLine();
+            for (int i = index.lineStart(l); i < index.lineEnd(l); i++) {
+                Transport node = index.nodes[i];
+                int key = node instanceof Container container
+                        ? ItemRegistry.intern(container.getKey()).getId() : 0;
+                state.append(index.kind[i], node.getId(), key);
+            }
+            state.endLine();
+        }
+    }
+
+    /**
+     * Constructs a new OffHeapStrategy ticking an existing state, with no grid behind it.
+     *
+     * @param state the state to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if state or faults is null
+     */
+    public OffHeapStrategy(OffHeapState state, FaultRecorder faults)
+            throws IllegalArgumentException {
+        if (state == null || faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.grid = null;
+        this.state = state;
+    }
+
+    /**
+     * Accessor method for the state being ticked.
+     *
+     * @return the state
+     */
+    public OffHeapState getState() {
+        return state;
+    }
+
+    @Override
+    public void load() {
+        ticks = 0;
+        if (grid == null) {
+            return;
+        }
+        for (int l = 0; l < state.getLineCount(); l++) {
+            for (int i = state.lineStart(l); i < state.lineEnd(l); i++) {
+                Transport node = grid[i];
+                if (node instanceof Receiver receiver) {
+                    state.setInventory(i, receiver.getPending());
+                    state.setDelivered(l, receiver.getDelivered());
+                } else {
+                    state.setInventory(i, node.getInventory());
+                }
+                if (node instanceof Producer producer) {
+                    state.setCounter(i, producer.getCounter());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ticks every line from its tail: the Receiver consumes, every Belt with an empty
+     * successor moves its item forward, and the Producer produces on every second tick.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        ByteBuffer nodes = state.nodes;
+        ByteBuffer lines = state.lines;
+        int lineCount = state.getLineCount();
+        for (int l = 0; l < lineCount; l++) {
+            int record = l * OffHeapState.LINE_BYTES;
+            int head = lines.getInt(record + OffHeapState.LINE_START) * OffHeapState.NODE_BYTES;
+            int end = lines.getInt(record + OffHeapState.LINE_END) * OffHeapState.NODE_BYTES;
+            int i = end - OffHeapState.NODE_BYTES;
+            byte tail = nodes.get(i + OffHeapState.KIND);
+            if (tail == TopologyIndex.KIND_RECEIVER) {
+                int item = nodes.getInt(i + OffHeapState.INVENTORY);
+                int key = nodes.getInt(i + OffHeapState.KEY);
+                if (item != 0 && item != key) {
+                    faults.record(ticks, nodes.getInt(i + OffHeapState.ID), key, item);
+                    continue;
+                }
+                if (item != 0) {
+                    lines.putLong(record + OffHeapState.DELIVERED,
+                            lines.getLong(record + OffHeapState.DELIVERED) + 1);
+                    nodes.putInt(i + OffHeapState.INVENTORY, 0);
+                }
+                i -= OffHeapState.NODE_BYTES;
+            } else if (tail == TopologyIndex.KIND_BELT) {
+                i -= OffHeapState.NODE_BYTES; // a Belt at the tail has nowhere to go
+            }
+            for (; i > head; i -= OffHeapState.NODE_BYTES) {
+                int item = nodes.getInt(i + OffHeapState.INVENTORY);
+                int ahead = i + OffHeapState.NODE_BYTES + OffHeapState.INVENTORY;
+                if (item != 0 && nodes.getInt(ahead) == 0) {
+                    nodes.putInt(ahead, item);
+                    nodes.putInt(i + OffHeapState.INVENTORY, 0);
+                }
+            }
+            if (i == head) {
+                int ahead = head + OffHeapState.NODE_BYTES + OffHeapState.INVENTORY;
+                boolean hasNext = head + OffHeapState.NODE_BYTES < end;
+                int item = nodes.getInt(head + OffHeapState.INVENTORY);
+                if (nodes.get(head + OffHeapState.KIND) == TopologyIndex.KIND_PRODUCER) {
+                    int counter = nodes.get(head + OffHeapState.COUNTER) ^ 1;
+                    nodes.put(head + OffHeapState.COUNTER, (byte) counter);
+                    if (counter == 1) {
+                        if (hasNext && item != 0 && nodes.getInt(ahead) == 0) {
+                            nodes.putInt(ahead, item);
+                        }
+                        nodes.putInt(head + OffHeapState.INVENTORY,
+                                nodes.getInt(head + OffHeapState.KEY));
+                    }
+                } else if (hasNext && item != 0 && nodes.getInt(ahead) == 0) {
+                    nodes.putInt(ahead, item);
+                    nodes.putInt(head + OffHeapState.INVENTORY, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void store() {
+        if (grid == null) {
+            return;
+        }
+        for (int l = 0; l < state.getLineCount(); l++) {
+            for (int i = state.lineStart(l); i < state.lineEnd(l); i++) {
+                Transport node = grid[i];
+                if (node instanceof Producer producer) {
+                    producer.setCounter(state.getCounter(i));
+                } else if (node instanceof Receiver receiver) {
+                    receiver.setPending(state.getInventory(i));
+                    receiver.setDelivered(state.getDelivered(l));
+                } else {
+                    node.setInventory(state.getInventory(i));
+                }
+            }
+        }
+    }
+}
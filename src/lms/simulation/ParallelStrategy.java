@@ -0,0 +1,196 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A SegmentStrategy that ticks independent lines in parallel on a ForkJoinPool. Lines never
+ * share a Transport node, and a line's state lives in its own slot of each array, so any two
+ * lines can be ticked at the same time without locking.
+ * <p>
+ * The lines are split once into one work unit per thread of the pool, balanced by cost with
+ * the longest processing time first rule. The lines are taken from the longest down, and each
+ * goes to the unit with the least cost so far. A line's cost is its number of nodes. Every tick
+ * runs all the units and waits for them to finish before returning, which acts as the barrier
+ * between ticks. The tasks are reused from tick to tick, so ticking allocates nothing.
+ * <p>
+ * Results are identical to the serial strategies. Only the order of fault reports from
+ * different lines may differ.
+ */
+public class ParallelStrategy extends SegmentStrategy {
+
+    /**
+     * Pool the units are run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Lines ticked by each work unit.
+     */
+    private final Unit[] units;
+
+    /**
+     * Task forking every unit, reused on every tick.
+     */
+    private final RecursiveAction sweep;
+
+    /**
+     * Constructs a new ParallelStrategy for the given schedule, running on the common pool.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public ParallelStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        this(schedule, faults, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new ParallelStrategy for the given schedule, running on the given pool with
+     * one work unit for each of its threads.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @param pool the pool to tick on
+     * @throws IllegalArgumentException if schedule, faults or pool is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public ParallelStrategy(LineSchedule schedule, FaultRecorder faults, ForkJoinPool pool)
+            throws IllegalArgumentException, UnsupportedActionException {
+        super(schedule, faults);
+        if (pool == null) {
+            throw new IllegalArgumentException();
+        }
+        this.pool = pool;
+        this.units = partition(schedule, Math.max(1, pool.getParallelism()));
+        this.sweep = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(units);
+            }
+        };
+    }
+
+    /**
+     * Helper Method:
+     * Splits the lines of a schedule into at most the given number of units of similar cost,
+     * assigning the longest line first to the cheapest unit.
+     *
+     * @param schedule the compiled lines
+     * @param parallelism number of units wanted
+     * @return the non-empty units
+     */
+    private Unit[] partition(LineSchedule schedule, int parallelism) {
+        int lines = schedule.getLineCount();
+        Integer[] order = new Integer[lines];
+        for (int l = 0; l < lines; l++) {
+            order[l] = l;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer l) -> schedule.lines()[l].length)
+                .reversed());
+
+        int count = Math.min(parallelism, lines);
+        long[] cost = new long[count];
+        int[][] assigned = new int[count][lines];
+        int[] sizes = new int[count];
+        PriorityQueue<Integer> cheapest = new PriorityQueue<>(
+                Comparator.comparingLong((Integer u) -> cost[u]).thenComparingInt(u -> u));
+        for (int u = 0; u < count; u++) {
+            cheapest.add(u);
+        }
+        for (int l : order) {
+            int u = cheapest.poll();
+            assigned[u][sizes[u]++] = l;
+            cost[u] += schedule.lines()[l].length;
+            cheapest.add(u);
+        }
+
+        Unit[] units = new Unit[count];
+        for (int u = 0; u < count; u++) {
+            int[] unitLines = Arrays.copyOf(assigned[u], sizes[u]);
+            Arrays.sort(unitLines);
+            units[u] = new Unit(unitLines, cost[u]);
+        }
+        return units;
+    }
+
+    /**
+     * Returns the summed cost of the lines in each work unit, showing how evenly they were
+     * balanced.
+     *
+     * @return the cost of each unit
+     */
+    public long[] getUnitCosts() {
+        long[] costs = new long[units.length];
+        for (int u = 0; u < units.length; u++) {
+            costs[u] = units[u].cost;
+        }
+        return costs;
+    }
+
+    /**
+     * Ticks every unit in parallel and waits for all of them to finish.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        if (units.length == 1) {
+            units[0].compute();
+            return;
+        }
+        for (Unit unit : units) {
+            unit.reinitialize();
+        }
+        sweep.reinitialize();
+        pool.invoke(sweep);
+    }
+
+    /**
+     * A group of lines ticked one after another by a single thread.
+     */
+    private final class Unit extends RecursiveAction {
+
+        /**
+         * Version of the serialized form, which is never used.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Lines in this unit, in ascending order.
+         */
+        private final int[] lines;
+
+        /**
+         * Summed cost of the lines.
+         */
+        private final long cost;
+
+        /**
+         * Constructs a new Unit.
+         *
+         * @param lines lines in the unit
+         * @param cost summed cost of the lines
+         */
+        private Unit(int[] lines, long cost) {
+            this.lines = lines;
+            this.cost = cost;
+        }
+
+        @Override
+        protected void compute() {
+            for (int l : lines) {
+                tickLine(l);
+            }
+        }
+    }
+}
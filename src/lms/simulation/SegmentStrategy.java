@@ -0,0 +1,282 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.container.Container;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+/**
+ * A TickStrategy that collapses the run of plain Belts between a line's Producer and Receiver
+ * into a single {@link BeltSegment}. The segment acts as a bounded delay line that only stores
+ * the items on it, so a tick costs time proportional to the number of items in flight rather
+ * than the number of belts.
+ * <p>
+ * The Transport nodes on the grid are brought up to date at the end of every run of ticks. As
+ * only the belts that held an item at the start of the run or hold one at its end can have
+ * changed, this too is proportional to the number of items.
+ */
+public class SegmentStrategy implements TickStrategy {
+
+    /**
+     * Layout of the nodes being ticked.
+     */
+    private final TopologyIndex index;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the last load.
+     */
+    long ticks;
+
+    /**
+     * Belt segment of each line, or null if the line has no belts.
+     */
+    final BeltSegment[] segments;
+
+    /**
+     * Index of the first belt of each line.
+     */
+    private final int[] beltStart;
+
+    /**
+     * Index of each line's Producer, or -1 if the line does not start with one.
+     */
+    final int[] producer;
+
+    /**
+     * Index of each line's Receiver, or -1 if the line does not end with one.
+     */
+    private final int[] receiver;
+
+    /**
+     * Item id of each line's Producer key, 0 if there is none.
+     */
+    private final int[] producerKey;
+
+    /**
+     * Item id of each line's Receiver key, 0 if there is none.
+     */
+    private final int[] receiverKey;
+
+    /**
+     * Tick parity of each line's Producer.
+     */
+    final int[] counter;
+
+    /**
+     * Item id waiting in each line's Receiver, 0 if none.
+     */
+    private final int[] pending;
+
+    /**
+     * Items delivered by each line's Receiver.
+     */
+    private final long[] delivered;
+
+    /**
+     * Indices of the belts that held an item when the state was last loaded.
+     */
+    private final int[] loaded;
+
+    /**
+     * Number of entries used in loaded.
+     */
+    private int loadedCount;
+
+    /**
+     * Constructs a new SegmentStrategy for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     * @throws UnsupportedActionException if the schedule holds anything other than simple lines
+     * of plain Belt, Producer and Receiver nodes
+     */
+    public SegmentStrategy(LineSchedule schedule, FaultRecorder faults)
+            throws IllegalArgumentException, UnsupportedActionException {
+        if (faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        this.index = new TopologyIndex(schedule);
+        if (!index.isSimple()) {
+            throw new UnsupportedActionException("SegmentStrategy only ticks simple lines");
+        }
+        int lines = index.getLineCount();
+        segments = new BeltSegment[lines];
+        beltStart = new int[lines];
+        producer = new int[lines];
+        receiver = new int[lines];
+        producerKey = new int[lines];
+        receiverKey = new int[lines];
+        counter = new int[lines];
+        pending = new int[lines];
+        delivered = new long[lines];
+        loaded = new int[index.size()];
+
+        for (int l = 0; l < lines; l++) {
+            int head = index.lineStart(l);
+            int end = index.lineEnd(l);
+            producer[l] = index.kind[head] == TopologyIndex.KIND_PRODUCER ? head : -1;
+            receiver[l] = index.kind[end - 1] == TopologyIndex.KIND_RECEIVER ? end - 1 : -1;
+            beltStart[l] = producer[l] == -1 ? head : head + 1;
+            int belts = (receiver[l] == -1 ? end : end - 1) - beltStart[l];
+            segments[l] = belts > 0 ? new BeltSegment(belts) : null;
+            producerKey[l] = producer[l] == -1 ? 0 : keyOf(producer[l]);
+            receiverKey[l] = receiver[l] == -1 ? 0 : keyOf(receiver[l]);
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of the key of the Container at the given index.
+     *
+     * @param node index of a Producer or Receiver
+     * @return the key's id
+     */
+    private int keyOf(int node) {
+        return ItemRegistry.intern(((Container) index.nodes[node]).getKey()).getId();
+    }
+
+    @Override
+    public void load() {
+        ticks = 0;
+        loadedCount = 0;
+        for (int l = 0; l < segments.length; l++) {
+            BeltSegment segment = segments[l];
+            if (segment != null) {
+                segment.clear();
+                for (int k = segment.length() - 1; k >= 0; k--) {
+                    Item item = index.nodes[beltStart[l] + k].getInventory();
+                    if (item != null) {
+                        segment.add(k, ItemRegistry.intern(item).getId());
+                        loaded[loadedCount++] = beltStart[l] + k;
+                    }
+                }
+            }
+            if (producer[l] != -1) {
+                counter[l] = ((Producer) index.nodes[producer[l]]).getCounter();
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                Item item = node.getPending();
+                pending[l] = item == null ? 0 : ItemRegistry.intern(item).getId();
+                delivered[l] = node.getDelivered();
+            }
+        }
+    }
+
+    /**
+     * Ticks every line: the Receiver consumes, the segment steps, and the Producer produces.
+     */
+    @Override
+    public void tick() {
+        ticks++;
+        for (int l = 0; l < segments.length; l++) {
+            tickLine(l);
+        }
+    }
+
+    /**
+     * Ticks one line, then reports whether ticking it again could change anything other than
+     * its Producer's parity. A line that ends in a Receiver stays live while it has a Producer
+     * or anything in flight; any other line goes quiet once its items are backed up against
+     * the tail and its Producer, if any, has no room left to produce into. A line whose
+     * Receiver holds the wrong item is {@link #isFaulted faulted}: it is recorded and goes
+     * quiet at once, as it will fault the same way on every later tick.
+     *
+     * @param l the line to tick
+     * @return false if the line can no longer change apart from its Producer's parity
+     */
+    boolean tickLine(int l) {
+        boolean sink = receiver[l] != -1;
+        if (sink && pending[l] != 0) {
+            if (pending[l] != receiverKey[l]) {
+                recordFault(l, ticks, 1);
+                return false;
+            }
+            delivered[l]++;
+            pending[l] = 0;
+        }
+        BeltSegment segment = segments[l];
+        if (segment != null && segment.size() > 0) {
+            int left = segment.step(sink);
+            if (left != 0) {
+                pending[l] = left;
+            }
+        }
+        if (producer[l] != -1) {
+            counter[l] = (counter[l] + 1) % 2;
+            if (counter[l] == 1) {
+                if (segment != null) {
+                    if (segment.canAccept()) {
+                        segment.add(0, producerKey[l]);
+                    }
+                } else if (sink) {
+                    pending[l] = producerKey[l]; // the Receiver was emptied above
+                }
+            }
+        }
+
+        if (sink) {
+            return producer[l] != -1 || pending[l] != 0
+                    || (segment != null && segment.size() > 0);
+        } else if (segment == null || !segment.isSettled()) {
+            return segment != null;
+        }
+        return producer[l] != -1 && segment.canAccept();
+    }
+
+    /**
+     * Checks whether a line's Receiver holds the wrong item, which stops the line for good: it
+     * is skipped on every tick, Producer parity included, until the state is next loaded.
+     *
+     * @param l the line to check
+     * @return true if the line faults on every tick
+     */
+    boolean isFaulted(int l) {
+        return receiver[l] != -1 && pending[l] != 0 && pending[l] != receiverKey[l];
+    }
+
+    /**
+     * Records the fault of a faulted line, repeated over consecutive ticks.
+     *
+     * @param l the faulted line
+     * @param tick the first tick of the fault, counted from the last load
+     * @param repeats number of ticks the line faulted on
+     */
+    void recordFault(int l, long tick, long repeats) {
+        faults.record(tick, index.nodes[receiver[l]].getId(), receiverKey[l], pending[l],
+                repeats);
+    }
+
+    @Override
+    public void store() {
+        for (int i = 0; i < loadedCount; i++) {
+            index.nodes[loaded[i]].setInventory(null);
+        }
+        for (int l = 0; l < segments.length; l++) {
+            BeltSegment segment = segments[l];
+            if (segment != null) {
+                for (int k = 0; k < segment.size(); k++) {
+                    index.nodes[beltStart[l] + segment.positionAt(k)]
+                            .setInventory(ItemRegistry.get(segment.itemAt(k)));
+                }
+            }
+            if (producer[l] != -1) {
+                ((Producer) index.nodes[producer[l]]).setCounter(counter[l]);
+            }
+            if (receiver[l] != -1) {
+                Receiver node = (Receiver) index.nodes[receiver[l]];
+                node.setPending(ItemRegistry.get(pending[l]));
+                node.setDelivered(delivered[l]);
+            }
+        }
+    }
+}
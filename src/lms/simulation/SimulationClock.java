@@ -0,0 +1,383 @@
+package lms.simulation;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Paces a SimulationEngine against wall-clock time read from {@link System#nanoTime()}, for a
+ * view that redraws the factory once per frame. Each call to {@link #runFrame} runs the ticks
+ * that have fallen due since the last frame and returns, leaving the view to draw the result.
+ * <p>
+ * Ticks fall due at the target rate times the speed multiplier. The clock keeps the fraction
+ * of a tick left over from every frame and measures the real time between frames, so the rate
+ * does not drift however late the frames are. If a frame is late, for example because drawing
+ * took too long, the frames that should have happened in the meantime are skipped and the
+ * next frame catches up on all of their ticks. At most one second of ticks is caught up in a
+ * single frame; any more are dropped rather than letting the view fall further behind.
+ * <p>
+ * In uncapped mode the rate is ignored, and each frame runs as many ticks as fit in half of
+ * the frame's time, leaving the other half for the view to draw and handle input.
+ * <p>
+ * The clock measures the rates it actually achieves, over windows of about a second, which
+ * can be compared with the target by {@link #getMeasuredRate()} and
+ * {@link #getMeasuredFrameRate()}.
+ */
+public class SimulationClock {
+
+    /**
+     * Number of frames per second the clock expects by default.
+     */
+    public static final int DEFAULT_FRAME_RATE = 60;
+
+    /**
+     * Length of a second in nanoseconds.
+     */
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Source of the current time in nanoseconds.
+     */
+    private final LongSupplier time;
+
+    /**
+     * Ticks per second at a speed of 1.
+     */
+    private double targetRate;
+
+    /**
+     * Multiplier applied to the target rate.
+     */
+    private double speed;
+
+    /**
+     * Whether ticks are run as fast as possible.
+     */
+    private boolean uncapped;
+
+    /**
+     * Expected time between frames, in nanoseconds.
+     */
+    private long frameNanos;
+
+    /**
+     * Whether a frame has been run since the clock was created or reset.
+     */
+    private boolean started;
+
+    /**
+     * Time of the last frame.
+     */
+    private long lastFrame;
+
+    /**
+     * Fraction of a tick that had fallen due but was not yet run.
+     */
+    private double owed;
+
+    /**
+     * Number of ticks to run between checks of the time in uncapped mode.
+     */
+    private long batch;
+
+    /**
+     * Start of the current measuring window.
+     */
+    private long windowStart;
+
+    /**
+     * Ticks run in the current measuring window.
+     */
+    private long windowTicks;
+
+    /**
+     * Frames run in the current measuring window.
+     */
+    private long windowFrames;
+
+    /**
+     * Ticks per second measured over the last full window.
+     */
+    private double measuredRate;
+
+    /**
+     * Frames per second measured over the last full window.
+     */
+    private double measuredFrameRate;
+
+    /**
+     * Number of frames skipped because a frame came late.
+     */
+    private long skippedFrames;
+
+    /**
+     * Number of ticks dropped because more than a second of them had fallen due.
+     */
+    private long droppedTicks;
+
+    /**
+     * Constructs a new SimulationClock running at the given rate, timed by System.nanoTime.
+     *
+     * @param targetRate ticks per second at a speed of 1
+     * @throws IllegalArgumentException if targetRate is not positive
+     */
+    public SimulationClock(double targetRate) throws IllegalArgumentException {
+        this(targetRate, System::nanoTime);
+    }
+
+    /**
+     * Constructs a new SimulationClock running at the given rate, timed by the given source.
+     *
+     * @param targetRate ticks per second at a speed of 1
+     * @param time source of the current time in nanoseconds, e.g. System::nanoTime
+     * @throws IllegalArgumentException if targetRate is not positive or time is null
+     */
+    public SimulationClock(double targetRate, LongSupplier time)
+            throws IllegalArgumentException {
+        if (time == null) {
+            throw new IllegalArgumentException();
+        }
+        this.time = time;
+        setTargetRate(targetRate);
+        this.speed = 1;
+        this.uncapped = false;
+        this.frameNanos = SECOND / DEFAULT_FRAME_RATE;
+        this.batch = 1;
+        reset();
+    }
+
+    /**
+     * Sets the number of ticks per second at a speed of 1.
+     *
+     * @param targetRate ticks per second
+     * @throws IllegalArgumentException if targetRate is not positive
+     */
+    public void setTargetRate(double targetRate) throws IllegalArgumentException {
+        if (!(targetRate > 0) || Double.isInfinite(targetRate)) {
+            throw new IllegalArgumentException();
+        }
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Returns the number of ticks per second at a speed of 1.
+     *
+     * @return the target rate
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * Sets the multiplier applied to the target rate, e.g. 2 to run twice as fast.
+     *
+     * @param speed the speed multiplier
+     * @throws IllegalArgumentException if speed is not positive
+     */
+    public void setSpeed(double speed) throws IllegalArgumentException {
+        if (!(speed > 0) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException();
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the multiplier applied to the target rate.
+     *
+     * @return the speed multiplier
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Returns the number of ticks per second the clock aims for, which is the target rate
+     * times the speed.
+     *
+     * @return the effective target rate
+     */
+    public double getEffectiveRate() {
+        return targetRate * speed;
+    }
+
+    /**
+     * Sets whether ticks are run as fast as possible instead of at the target rate.
+     *
+     * @param uncapped true to ignore the target rate
+     */
+    public void setUncapped(boolean uncapped) {
+        this.uncapped = uncapped;
+        this.owed = 0;
+    }
+
+    /**
+     * Checks whether ticks are run as fast as possible.
+     *
+     * @return true if the target rate is ignored
+     */
+    public boolean isUncapped() {
+        return uncapped;
+    }
+
+    /**
+     * Sets the number of frames per second the view draws, which decides how late a frame must
+     * be to count frames as skipped, and how long a frame ticks for in uncapped mode.
+     *
+     * @param frameRate frames per second
+     * @throws IllegalArgumentException if frameRate is less than 1
+     */
+    public void setFrameRate(int frameRate) throws IllegalArgumentException {
+        if (frameRate < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.frameNanos = SECOND / frameRate;
+    }
+
+    /**
+     * Forgets the time since the last frame, so that the next frame runs no ticks for it. This
+     * is called while the simulation is paused, so that resuming does not catch up on the
+     * pause.
+     */
+    public void reset() {
+        started = false;
+        owed = 0;
+        windowTicks = 0;
+        windowFrames = 0;
+    }
+
+    /**
+     * Runs the ticks that have fallen due since the last frame on the given engine.
+     *
+     * @param engine the engine to advance
+     * @return the number of ticks run
+     * @throws IllegalArgumentException if engine is null
+     */
+    public long runFrame(SimulationEngine engine) throws IllegalArgumentException {
+        if (engine == null) {
+            throw new IllegalArgumentException();
+        }
+        long now = time.getAsLong();
+        if (!started) {
+            started = true;
+            lastFrame = now;
+            windowStart = now;
+        }
+        long elapsed = now - lastFrame;
+        lastFrame = now;
+        if (elapsed > frameNanos * 3 / 2) {
+            skippedFrames += elapsed / frameNanos - 1;
+        }
+
+        long ran;
+        if (uncapped) {
+            ran = runUncapped(engine, now);
+        } else {
+            ran = ticksDue(elapsed);
+            engine.step(ran);
+        }
+        measure(ran);
+        return ran;
+    }
+
+    /**
+     * Returns the number of ticks per second run over the last full measuring window.
+     *
+     * @return the measured rate, or 0 before a window has completed
+     */
+    public double getMeasuredRate() {
+        return measuredRate;
+    }
+
+    /**
+     * Returns the number of frames per second run over the last full measuring window.
+     *
+     * @return the measured frame rate, or 0 before a window has completed
+     */
+    public double getMeasuredFrameRate() {
+        return measuredFrameRate;
+    }
+
+    /**
+     * Returns the number of frames that were skipped because a frame came late.
+     *
+     * @return total number of skipped frames
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Returns the number of ticks that were dropped because more than a second of them had
+     * fallen due in one frame.
+     *
+     * @return total number of dropped ticks
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Helper Method:
+     * Works out how many whole ticks have fallen due in the given time, keeping the fraction
+     * left over for the next frame.
+     *
+     * @param elapsed time since the last frame, in nanoseconds
+     * @return number of ticks to run
+     */
+    private long ticksDue(long elapsed) {
+        double rate = getEffectiveRate();
+        owed += elapsed * rate / SECOND;
+        long due = (long) owed;
+        owed -= due;
+        long limit = Math.max(1, (long) rate);
+        if (due > limit) {
+            droppedTicks += due - limit;
+            due = limit;
+        }
+        return due;
+    }
+
+    /**
+     * Helper Method:
+     * Runs batches of ticks until half of the frame's time has passed. The batch is resized
+     * after every frame so that the time is checked about eight times per frame.
+     *
+     * @param engine the engine to advance
+     * @param start time the frame started
+     * @return the number of ticks run
+     */
+    private long runUncapped(SimulationEngine engine, long start) {
+        long deadline = start + frameNanos / 2;
+        long ran = 0;
+        int batches = 0;
+        do {
+            engine.step(batch);
+            ran += batch;
+            batches++;
+        } while (time.getAsLong() < deadline);
+        if (batches > 16) {
+            batch *= 2;
+        } else if (batches < 4 && batch > 1) {
+            batch /= 2;
+        }
+        return ran;
+    }
+
+    /**
+     * Helper Method:
+     * Counts a frame and its ticks towards the current measuring window, closing the window
+     * once it is a second long.
+     *
+     * @param ticks number of ticks run in the frame
+     */
+    private void measure(long ticks) {
+        windowTicks += ticks;
+        windowFrames++;
+        long length = lastFrame - windowStart;
+        if (length >= SECOND) {
+            measuredRate = windowTicks * (double) SECOND / length;
+            measuredFrameRate = windowFrames * (double) SECOND / length;
+            windowStart = lastFrame;
+            windowTicks = 0;
+            windowFrames = 0;
+        }
+    }
+}
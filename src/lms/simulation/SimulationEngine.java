@@ -0,0 +1,438 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.grid.GameGrid;
+import lms.logistics.Transport;
+
+import java.util.function.Predicate;
+
+/**
+ * Headless driver for a factory loaded by {@link lms.io.GameLoader}. The engine advances every
+ * production line of a GameGrid by whole ticks, without depending on a Swing timer, view or
+ * canvas, so it can run as fast as the CPU allows.
+ * <p>
+ * Example usage:
+ * <p>
+ * SimulationEngine engine = new SimulationEngine(GameLoader.load(reader));
+ * <p>
+ * engine.step(1_000_000);
+ * <p>
+ * The work of each tick is done by a {@link TickStrategy}. By default this is ObjectStrategy,
+ * which ticks the Transport nodes themselves; faster strategies such as ArrayStrategy can be
+ * chosen by passing their factory to the constructor.
+ * <p>
+ * The engine also keeps track of how many ticks it has run and the time spent running them,
+ * which is reported by {@link #getTicksPerSecond()}, and records the faults found by its
+ * strategies in a {@link FaultRecorder}.
+ */
+public class SimulationEngine {
+
+    /**
+     * The grid being simulated.
+     */
+    private final GameGrid grid;
+
+    /**
+     * Compiled tick order of the grid's production lines, or null before the first tick.
+     */
+    private LineSchedule schedule;
+
+    /**
+     * Every line of the grid as last compiled, before any were pruned, or null before the
+     * first tick.
+     */
+    private LineSchedule compiled;
+
+    /**
+     * Analysis of the lines compiled with the current schedule, before any were pruned, or null
+     * before the first tick.
+     */
+    private LineAnalysis analysis;
+
+    /**
+     * Whether inert lines are left out of the schedule.
+     */
+    private boolean pruning;
+
+    /**
+     * Array copy of the current schedule's links, or null until it is first requested.
+     */
+    private TopologyIndex topology;
+
+    /**
+     * Creates the strategy used to tick each compiled schedule.
+     */
+    private final TickStrategy.Factory factory;
+
+    /**
+     * Strategy ticking the current schedule, or null before the first tick.
+     */
+    private TickStrategy strategy;
+
+    /**
+     * Schedule the current strategy was created for.
+     */
+    private LineSchedule strategySchedule;
+
+    /**
+     * Closed form strategy used by fastForward, or null until it is first needed.
+     */
+    private AnalyticStrategy analytic;
+
+    /**
+     * Schedule the analytic strategy was created for.
+     */
+    private LineSchedule analyticSchedule;
+
+    /**
+     * Where the strategies record the faults they find.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Number of ticks processed since this engine was created.
+     */
+    private long tickCount;
+
+    /**
+     * Total wall-clock time, in nanoseconds, spent processing ticks.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Creates a new SimulationEngine for the given grid, ticking the Transport nodes directly.
+     *
+     * @param grid the grid to simulate, typically the result of GameLoader.load
+     * @throws IllegalArgumentException if grid is null
+     */
+    public SimulationEngine(GameGrid grid) throws IllegalArgumentException {
+        this(grid, ObjectStrategy::new);
+    }
+
+    /**
+     * Creates a new SimulationEngine for the given grid, ticking it with strategies made by the
+     * given factory.
+     *
+     * @param grid the grid to simulate, typically the result of GameLoader.load
+     * @param factory creates the strategy for each compiled schedule, e.g. ArrayStrategy::new
+     * @throws IllegalArgumentException if grid or factory is null
+     */
+    public SimulationEngine(GameGrid grid, TickStrategy.Factory factory)
+            throws IllegalArgumentException {
+        if (grid == null || factory == null) {
+            throw new IllegalArgumentException();
+        }
+        this.grid = grid;
+        this.factory = factory;
+        this.strategy = null;
+        this.strategySchedule = null;
+        this.analytic = null;
+        this.analyticSchedule = null;
+        this.schedule = null;
+        this.compiled = null;
+        this.analysis = null;
+        this.pruning = false;
+        this.topology = null;
+        this.faults = new FaultRecorder();
+        this.tickCount = 0;
+        this.elapsedNanos = 0;
+    }
+
+    /**
+     * Accessor method for the grid being simulated.
+     *
+     * @return the grid this engine advances
+     */
+    public GameGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Sets whether the lines a {@link LineAnalysis} finds inert are left out of the schedule,
+     * so that they cost nothing to tick. Checking them again before every run costs a read of
+     * each of their nodes. It takes effect when the schedule is next compiled.
+     *
+     * @param pruning true to leave inert lines out
+     */
+    public void setPruning(boolean pruning) {
+        if (this.pruning != pruning) {
+            this.pruning = pruning;
+            this.schedule = null;
+        }
+    }
+
+    /**
+     * Checks whether inert lines are left out of the schedule.
+     *
+     * @return true if inert lines are left out
+     */
+    public boolean isPruning() {
+        return pruning;
+    }
+
+    /**
+     * Returns the compiled production lines of the grid, recompiling them first if the grid or
+     * its Path links have changed since they were last compiled. When pruning, inert lines are
+     * left out, and the lines left out are checked again first, in case their items have been
+     * changed from outside the engine.
+     *
+     * @return the current line schedule
+     */
+    public LineSchedule getSchedule() {
+        if (schedule == null || schedule.isStale(grid)) {
+            compiled = LineSchedule.compile(grid);
+            analysis = new LineAnalysis(compiled);
+            schedule = pruning ? analysis.prune() : compiled;
+            topology = null;
+        } else if (schedule != compiled && !analysis.isCurrent()) {
+            analysis = new LineAnalysis(compiled);
+            schedule = analysis.prune();
+            topology = null;
+        }
+        return schedule;
+    }
+
+    /**
+     * Returns the analysis of every line of the grid, made when the schedule was last
+     * compiled. It covers the lines that were pruned as well.
+     *
+     * @return the current line analysis
+     */
+    public LineAnalysis getAnalysis() {
+        getSchedule();
+        return analysis;
+    }
+
+    /**
+     * Returns the array form of the current line schedule, shared by everything that reads the
+     * grid's topology. It is rebuilt whenever the schedule is recompiled.
+     *
+     * @return the current topology index
+     */
+    public TopologyIndex getTopology() {
+        LineSchedule current = getSchedule();
+        if (topology == null) {
+            topology = new TopologyIndex(current);
+        }
+        return topology;
+    }
+
+    /**
+     * Returns the recorder holding the faults found while ticking. Setting it to strict mode
+     * makes a fault abandon the step it was found in by throwing a BadStateException, leaving
+     * the grid and the tick count as they were before the step, whatever the strategy.
+     *
+     * @return the fault recorder of this engine
+     */
+    public FaultRecorder getFaults() {
+        return faults;
+    }
+
+    /**
+     * Returns the number of ticks processed since this engine was created.
+     *
+     * @return total number of ticks run
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the average simulation speed, measured over all ticks run so far.
+     *
+     * @return ticks processed per second of wall-clock time, or 0 if no time has been measured
+     */
+    public double getTicksPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return tickCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Advances the simulation by a single tick.
+     */
+    public void step() {
+        step(1);
+    }
+
+    /**
+     * Advances the simulation by the given number of ticks.
+     *
+     * @param ticks number of ticks to run
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    public void step(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (ticks == 0) {
+            return;
+        }
+        run(getStrategy(), ticks);
+    }
+
+    /**
+     * Advances the simulation by the given number of ticks, working out the final state of
+     * each line in closed form with an AnalyticStrategy. This takes time proportional to the
+     * length of the lines rather than to ticks, so days of ticks can be skipped to read the
+     * final counters. Grids that are not made of simple lines are stepped as usual.
+     *
+     * @param ticks number of ticks to run
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    public void fastForward(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (ticks == 0) {
+            return;
+        }
+        LineSchedule current = getSchedule();
+        if (!getTopology().isSimple()) {
+            run(getStrategy(), ticks);
+            return;
+        }
+        if (analytic == null || analyticSchedule != current) {
+            analytic = new AnalyticStrategy(current, faults);
+            analyticSchedule = current;
+        }
+        run(analytic, ticks);
+    }
+
+    /**
+     * Advances the simulation by the given number of ticks with a BottleneckAnalyzer, which
+     * records where items get stuck along every line. The ticks are run one node at a time
+     * whatever strategy the engine was made with.
+     *
+     * @param ticks number of ticks to run
+     * @return the analyzer holding the counts for those ticks
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    public BottleneckAnalyzer profile(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        BottleneckAnalyzer analyzer = new BottleneckAnalyzer(getSchedule(), faults);
+        if (ticks > 0) {
+            run(analyzer, ticks);
+        }
+        return analyzer;
+    }
+
+    /**
+     * Advances the simulation one tick at a time until the given condition holds. The condition
+     * is tested before every tick, so no ticks are run if it already holds.
+     *
+     * @param condition condition to test against this engine
+     * @return the number of ticks that were run
+     * @throws IllegalArgumentException if condition is null
+     */
+    public long runUntil(Predicate<SimulationEngine> condition) throws IllegalArgumentException {
+        return runUntil(condition, Long.MAX_VALUE);
+    }
+
+    /**
+     * Advances the simulation one tick at a time until the given condition holds, or until
+     * limit ticks have been run, whichever comes first.
+     *
+     * @param condition condition to test against this engine
+     * @param limit maximum number of ticks to run
+     * @return the number of ticks that were run
+     * @throws IllegalArgumentException if condition is null or limit is negative
+     */
+    public long runUntil(Predicate<SimulationEngine> condition, long limit)
+            throws IllegalArgumentException {
+        if (condition == null || limit < 0) {
+            throw new IllegalArgumentException();
+        }
+        long run = 0;
+        while (run < limit && !condition.test(this)) {
+            step();
+            run++;
+        }
+        return run;
+    }
+
+    /**
+     * Helper Method:
+     * Runs the given number of ticks with a strategy, timing them. In strict mode the state of
+     * every scheduled node is saved first, and put back if a fault is thrown, since strategies
+     * such as ObjectStrategy change the nodes as they tick. The strategies are then dropped,
+     * as their own copies of the state are part way through the step.
+     *
+     * @param current the strategy to run
+     * @param ticks number of ticks to run, at least 1
+     */
+    private void run(TickStrategy current, long ticks) {
+        long start = System.nanoTime();
+        faults.startRun(tickCount);
+        Object[] saved = faults.isStrict() ? saveState() : null;
+        try {
+            current.load();
+            current.advance(ticks);
+        } catch (BadStateException e) {
+            if (saved != null) {
+                restoreState(saved);
+                strategy = null;
+                analytic = null;
+            }
+            throw e;
+        }
+        tickCount += ticks;
+        current.store();
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Helper Method:
+     * Saves the state of every node of the current schedule, in schedule order.
+     *
+     * @return the state of each node
+     */
+    private Object[] saveState() {
+        int size = 0;
+        for (Transport[] line : schedule.lines()) {
+            size += line.length;
+        }
+        Object[] saved = new Object[size];
+        int i = 0;
+        for (Transport[] line : schedule.lines()) {
+            for (Transport node : line) {
+                saved[i++] = node.saveState();
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Helper Method:
+     * Puts back the state of every node of the current schedule saved by saveState.
+     *
+     * @param saved the state of each node, in schedule order
+     */
+    private void restoreState(Object[] saved) {
+        int i = 0;
+        for (Transport[] line : schedule.lines()) {
+            for (Transport node : line) {
+                node.restoreState(saved[i++]);
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Returns the strategy for the current schedule, creating a new one if the schedule has
+     * been recompiled.
+     *
+     * @return the current strategy
+     */
+    private TickStrategy getStrategy() {
+        LineSchedule current = getSchedule();
+        if (strategy == null || strategySchedule != current) {
+            strategy = factory.create(current, faults);
+            strategySchedule = current;
+        }
+        return strategy;
+    }
+}
@@ -0,0 +1,236 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled plan for ticking the Transport nodes of a LineSchedule, with one loop for each
+ * kind of node instead of one {@code transport.tick()} call site for all of them.
+ * <p>
+ * A plain line holds only nodes of the exact Belt, Producer and Receiver classes, each
+ * outputting to the node after it. A plain line is always its Receiver, then its belts from the
+ * tail, then its Producer, and no two lines share a node. So the same ordering is kept by
+ * ticking every plain line's Receiver, then every plain line's belts, and then every plain
+ * line's Producer. Each of those loops only ever sees one class, so the JIT can inline the tick
+ * it calls. A Receiver holding the wrong item is found with {@link Receiver#accepts}
+ * before it would throw, recorded in a FaultRecorder, and the rest of its line is skipped for
+ * that tick.
+ * <p>
+ * Lines with any other kind of node are ticked one node at a time as before, catching a
+ * BadStateException to record the fault and skip the rest of the line.
+ */
+public class TickPlan {
+
+    /**
+     * Receiver at the tail of each plain line that has one.
+     */
+    private final Receiver[] receivers;
+
+    /**
+     * Plain line of each entry in receivers.
+     */
+    private final int[] receiverLine;
+
+    /**
+     * Belts of every plain line, each line ordered from the tail.
+     */
+    private final Belt[] belts;
+
+    /**
+     * First entry of each plain line in belts, followed by belts.length as an end marker.
+     */
+    private final int[] beltStart;
+
+    /**
+     * Producer at the head of each plain line that has one.
+     */
+    private final Producer[] producers;
+
+    /**
+     * Plain line of each entry in producers.
+     */
+    private final int[] producerLine;
+
+    /**
+     * Whether each plain line's Receiver refused its item on the current tick.
+     */
+    private final boolean[] skipped;
+
+    /**
+     * Lines holding other kinds of node, each ordered from the tail.
+     */
+    private final Transport[][] general;
+
+    /**
+     * Where faults found while ticking are recorded.
+     */
+    private final FaultRecorder faults;
+
+    /**
+     * Ticks run since the plan was compiled or last reset.
+     */
+    private long ticks;
+
+    /**
+     * Compiles the plan for the given schedule.
+     *
+     * @param schedule the compiled lines to tick
+     * @param faults where faults found while ticking are recorded
+     * @throws IllegalArgumentException if schedule or faults is null
+     */
+    public TickPlan(LineSchedule schedule, FaultRecorder faults) throws IllegalArgumentException {
+        if (schedule == null || faults == null) {
+            throw new IllegalArgumentException();
+        }
+        this.faults = faults;
+        List<Receiver> receivers = new ArrayList<>();
+        List<Integer> receiverLine = new ArrayList<>();
+        List<Belt> belts = new ArrayList<>();
+        List<Integer> beltStart = new ArrayList<>();
+        List<Producer> producers = new ArrayList<>();
+        List<Integer> producerLine = new ArrayList<>();
+        List<Transport[]> general = new ArrayList<>();
+
+        for (Transport[] line : schedule.lines()) {
+            if (!isPlain(line)) {
+                general.add(line);
+                continue;
+            }
+            int plain = beltStart.size();
+            beltStart.add(belts.size());
+            for (Transport node : line) {
+                if (node instanceof Receiver receiver) {
+                    receivers.add(receiver);
+                    receiverLine.add(plain);
+                } else if (node instanceof Producer producer) {
+                    producers.add(producer);
+                    producerLine.add(plain);
+                } else {
+                    belts.add((Belt) node);
+                }
+            }
+        }
+        beltStart.add(belts.size());
+
+        this.receivers = receivers.toArray(new Receiver[0]);
+        this.receiverLine = receiverLine.stream().mapToInt(Integer::intValue).toArray();
+        this.belts = belts.toArray(new Belt[0]);
+        this.beltStart = beltStart.stream().mapToInt(Integer::intValue).toArray();
+        this.producers = producers.toArray(new Producer[0]);
+        this.producerLine = producerLine.stream().mapToInt(Integer::intValue).toArray();
+        this.skipped = new boolean[this.beltStart.length - 1];
+        this.general = general.toArray(new Transport[0][]);
+    }
+
+    /**
+     * Helper Method:
+     * Checks whether a line can be ticked by the per kind loops: every node is a plain Belt,
+     * Producer or Receiver, and outputs to the node after it.
+     *
+     * @param line the line, ordered from the tail
+     * @return true if the line is plain
+     */
+    private static boolean isPlain(Transport[] line) {
+        for (int j = 0; j < line.length; j++) {
+            Class<?> type = line[j].getClass();
+            if (type != Belt.class && type != Producer.class && type != Receiver.class) {
+                return false;
+            }
+            Path output = line[j].getPath().getNext();
+            if (j == 0 ? output != null : output == null || output.getNode() != line[j - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of lines that could not be split by kind and are ticked node by node.
+     *
+     * @return number of general lines
+     */
+    public int getGeneralLineCount() {
+        return general.length;
+    }
+
+    /**
+     * Restarts the numbering of ticks, which the engine does at the start of each run.
+     */
+    public void reset() {
+        ticks = 0;
+    }
+
+    /**
+     * Ticks every line once. A line whose Receiver is in a bad state is recorded and skipped
+     * without affecting the other lines.
+     */
+    public void tick() {
+        ticks++;
+        for (int r = 0; r < receivers.length; r++) {
+            Receiver receiver = receivers[r];
+            if (receiver.accepts(receiver.getPending())) {
+                skipped[receiverLine[r]] = false;
+                receiver.tick();
+            } else {
+                skipped[receiverLine[r]] = true;
+                recordFault(receiver);
+            }
+        }
+        for (int l = 0; l < skipped.length; l++) {
+            if (!skipped[l]) {
+                for (int b = beltStart[l]; b < beltStart[l + 1]; b++) {
+                    belts[b].tick();
+                }
+            }
+        }
+        for (int p = 0; p < producers.length; p++) {
+            if (!skipped[producerLine[p]]) {
+                producers[p].tick();
+            }
+        }
+        for (Transport[] line : general) {
+            try {
+                for (Transport transport : line) {
+                    transport.tick();
+                }
+            } catch (BadStateException bse) {
+                if (line[0] instanceof Receiver receiver) {
+                    recordFault(receiver);
+                } else {
+                    faults.record(ticks, line[0].getId(), 0, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Records a Receiver that refused the item it holds.
+     *
+     * @param receiver the faulty Receiver
+     */
+    private void recordFault(Receiver receiver) {
+        faults.record(ticks, receiver.getId(), idOf(receiver.getKey()),
+                idOf(receiver.getPending()));
+    }
+
+    /**
+     * Helper Method:
+     * Returns the ItemRegistry id of an item.
+     *
+     * @param item the item, or null
+     * @return its id, or 0 for null
+     */
+    private static int idOf(Item item) {
+        return item == null ? 0 : ItemRegistry.intern(item).getId();
+    }
+}
@@ -0,0 +1,60 @@
+package lms.simulation;
+
+/**
+ * A way of advancing the production lines of a LineSchedule, used by SimulationEngine to do the
+ * actual work of each tick.
+ * <p>
+ * A strategy may keep its own copy of the factory state in whatever form suits it. The engine
+ * calls {@link #load()} before a run of ticks and {@link #store()} after it, so between runs the
+ * Transport nodes on the grid always hold the current state.
+ */
+public interface TickStrategy {
+
+    /**
+     * Reads the current state of the scheduled Transport nodes into this strategy.
+     */
+    void load();
+
+    /**
+     * Advances every scheduled line by one tick.
+     */
+    void tick();
+
+    /**
+     * Advances every scheduled line by the given number of ticks. By default this calls
+     * {@link #tick()} that many times; strategies that can skip ticks override it.
+     *
+     * @param ticks number of ticks to advance by
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    default void advance(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException();
+        }
+        for (long i = 0; i < ticks; i++) {
+            tick();
+        }
+    }
+
+    /**
+     * Writes the state held by this strategy back into the scheduled Transport nodes.
+     */
+    void store();
+
+    /**
+     * Creates a strategy for a compiled schedule. The engine asks for a new strategy whenever
+     * the schedule is recompiled.
+     */
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * Creates a strategy that ticks the lines of the given schedule.
+         *
+         * @param schedule the compiled lines to tick
+         * @param faults where the strategy records the faults it finds
+         * @return a new strategy
+         */
+        TickStrategy create(LineSchedule schedule, FaultRecorder faults);
+    }
+}
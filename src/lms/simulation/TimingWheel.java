@@ -0,0 +1,253 @@
+package lms.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A hierarchical timing wheel of int events, each due at a long deadline. The wheel has
+ * LEVELS levels of 64 slots. Level 0 holds the events due in the current block of 64
+ * deadlines. Each higher level holds events 64 times further out, and an event is pushed down
+ * a level, or cascaded, once the wheel reaches its slot.
+ * <p>
+ * Every level keeps a bitmask of its occupied slots, so {@link #poll(long)} finds the next
+ * due event with a few bit scans and jumps straight to it. Time is never stepped through
+ * deadlines that hold no event. Scheduling and polling are O(1), apart from the cascades.
+ * <p>
+ * Entries are kept in preallocated arrays, so once it is built the wheel never allocates.
+ */
+final class TimingWheel {
+
+    /**
+     * Bits of the deadline covered by each level.
+     */
+    private static final int BITS = 6;
+
+    /**
+     * Number of slots in each level.
+     */
+    private static final int SLOTS = 1 << BITS;
+
+    /**
+     * Number of levels.
+     */
+    private static final int LEVELS = 10;
+
+    /**
+     * Largest deadline the wheel can hold.
+     */
+    static final long MAX_DEADLINE = (1L << (BITS * LEVELS)) - 1;
+
+    /**
+     * Deadline of each entry.
+     */
+    private final long[] deadlines;
+
+    /**
+     * Event of each entry.
+     */
+    private final int[] events;
+
+    /**
+     * Next entry in the same slot, or in the free list, or -1.
+     */
+    private final int[] links;
+
+    /**
+     * First entry of each slot of each level, or -1.
+     */
+    private final int[] heads;
+
+    /**
+     * Occupied slots of each level, one bit per slot.
+     */
+    private final long[] occupied;
+
+    /**
+     * First unused entry, or -1 if the wheel is full.
+     */
+    private int free;
+
+    /**
+     * Number of scheduled events.
+     */
+    private int size;
+
+    /**
+     * Deadline the wheel has advanced to.
+     */
+    private long current;
+
+    /**
+     * Constructs a new, empty TimingWheel.
+     *
+     * @param capacity the most events that can be scheduled at once
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    TimingWheel(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        deadlines = new long[capacity];
+        events = new int[capacity];
+        links = new int[capacity];
+        heads = new int[LEVELS * SLOTS];
+        occupied = new long[LEVELS];
+        clear();
+    }
+
+    /**
+     * Removes every event and winds the wheel back to deadline 0.
+     */
+    void clear() {
+        Arrays.fill(heads, -1);
+        Arrays.fill(occupied, 0L);
+        for (int i = 0; i < links.length; i++) {
+            links[i] = i + 1 < links.length ? i + 1 : -1;
+        }
+        free = links.length == 0 ? -1 : 0;
+        size = 0;
+        current = 0;
+    }
+
+    /**
+     * Returns the number of scheduled events.
+     *
+     * @return number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the deadline the wheel has advanced to. After a successful poll this is the
+     * deadline of the event it returned; it never passes the limit of the last poll, so any
+     * deadline after that limit can still be scheduled.
+     *
+     * @return current deadline
+     */
+    long current() {
+        return current;
+    }
+
+    /**
+     * Schedules an event.
+     *
+     * @param deadline when the event is due, no earlier than current()
+     * @param event the event, which must not be negative
+     * @throws IllegalArgumentException if the deadline has already passed or is beyond
+     * MAX_DEADLINE, or event is negative
+     * @throws IllegalStateException if capacity events are already scheduled
+     */
+    void schedule(long deadline, int event)
+            throws IllegalArgumentException, IllegalStateException {
+        if (deadline < current || deadline > MAX_DEADLINE || event < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (free == -1) {
+            throw new IllegalStateException("TimingWheel is full");
+        }
+        int entry = free;
+        free = links[entry];
+        deadlines[entry] = deadline;
+        events[entry] = event;
+        insert(entry);
+        size++;
+    }
+
+    /**
+     * Removes and returns the earliest event due no later than limit, advancing the wheel to
+     * its deadline. Events sharing a deadline are returned in no particular order.
+     *
+     * @param limit latest deadline to return an event for
+     * @return the event, or -1 if none is due by limit
+     */
+    int poll(long limit) {
+        while (size > 0) {
+            long ahead = occupied[0] & (-1L << (current & (SLOTS - 1)));
+            if (ahead != 0) {
+                int slot = Long.numberOfTrailingZeros(ahead);
+                long deadline = (current & -SLOTS) | slot;
+                if (deadline > limit) {
+                    return -1;
+                }
+                current = deadline;
+                return take(slot);
+            }
+            if (!cascade(limit)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper Method:
+     * Advances the wheel to the start of the next occupied slot above level 0, if it starts no
+     * later than limit, and pushes that slot's entries down to the levels below.
+     *
+     * @param limit latest deadline to advance to
+     * @return true if a slot was cascaded
+     */
+    private boolean cascade(long limit) {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = BITS * level;
+            int digit = (int) ((current >>> shift) & (SLOTS - 1));
+            long ahead = digit == SLOTS - 1 ? 0 : occupied[level] & (-1L << (digit + 1));
+            if (ahead == 0) {
+                continue;
+            }
+            int slot = Long.numberOfTrailingZeros(ahead);
+            long start = ((current >>> (shift + BITS)) << (shift + BITS))
+                    | ((long) slot << shift);
+            if (start > limit) {
+                return false;
+            }
+            current = start;
+            int entry = heads[level * SLOTS + slot];
+            heads[level * SLOTS + slot] = -1;
+            occupied[level] &= ~(1L << slot);
+            while (entry != -1) {
+                int following = links[entry];
+                insert(entry);
+                entry = following;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Helper Method:
+     * Links an entry into the slot of the lowest level whose span around current() holds its
+     * deadline.
+     *
+     * @param entry the entry to link
+     */
+    private void insert(int entry) {
+        long deadline = deadlines[entry];
+        long differing = deadline ^ current;
+        int level = differing == 0 ? 0 : (63 - Long.numberOfLeadingZeros(differing)) / BITS;
+        int slot = (int) ((deadline >>> (BITS * level)) & (SLOTS - 1));
+        links[entry] = heads[level * SLOTS + slot];
+        heads[level * SLOTS + slot] = entry;
+        occupied[level] |= 1L << slot;
+    }
+
+    /**
+     * Helper Method:
+     * Unlinks the first entry of a level 0 slot and returns its event.
+     *
+     * @param slot the slot to take from
+     * @return the event of the entry
+     */
+    private int take(int slot) {
+        int entry = heads[slot];
+        heads[slot] = links[entry];
+        if (heads[slot] == -1) {
+            occupied[0] &= ~(1L << slot);
+        }
+        links[entry] = free;
+        free = entry;
+        size--;
+        return events[entry];
+    }
+}
@@ -0,0 +1,269 @@
+package lms.simulation;
+
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Flat, array based copy of the links of a LineSchedule. Every Transport is given a dense index
+ * from 0 to size() - 1, numbered line by line from head to tail so that each line occupies one
+ * contiguous range of indices. For each index the index stores:
+ * <ul>
+ *     <li>next - index of the node this node outputs to, or -1 if it has no indexed output</li>
+ *     <li>prev - index of the upstream node, or -1 at the head of a line</li>
+ *     <li>kind - one of the KIND constants</li>
+ *     <li>lineId - index of the line the node belongs to</li>
+ * </ul>
+ * Line l covers the indices from lineStart(l) (its head) to lineEnd(l) - 1 (its tail).
+ * <p>
+ * Engines in this package read the arrays directly; they must never be modified.
+ */
+public class TopologyIndex {
+
+    /**
+     * Kind of a node that is not one of the plain Belt, Producer or Receiver classes.
+     */
+    public static final byte KIND_OTHER = 0;
+
+    /**
+     * Kind of a plain Belt node.
+     */
+    public static final byte KIND_BELT = 1;
+
+    /**
+     * Kind of a Producer node making items at the default rate.
+     */
+    public static final byte KIND_PRODUCER = 2;
+
+    /**
+     * Kind of a Receiver node.
+     */
+    public static final byte KIND_RECEIVER = 3;
+
+    /**
+     * Transport node at each index.
+     */
+    final Transport[] nodes;
+
+    /**
+     * Index of the node each index outputs to, or -1.
+     */
+    final int[] next;
+
+    /**
+     * Index of the upstream node of each index, or -1.
+     */
+    final int[] prev;
+
+    /**
+     * Kind of each index.
+     */
+    final byte[] kind;
+
+    /**
+     * Line each index belongs to.
+     */
+    final int[] lineId;
+
+    /**
+     * First index of each line, followed by size() as an end marker.
+     */
+    final int[] lineStart;
+
+    /**
+     * Dense index of each Transport, by identity.
+     */
+    private final Map<Transport, Integer> indices;
+
+    /**
+     * Constructs a new TopologyIndex numbering the lines of the given schedule.
+     *
+     * @param schedule the compiled lines to index
+     * @throws IllegalArgumentException if schedule is null
+     */
+    public TopologyIndex(LineSchedule schedule) throws IllegalArgumentException {
+        if (schedule == null) {
+            throw new IllegalArgumentException();
+        }
+        Transport[][] lines = schedule.lines();
+        int size = 0;
+        for (Transport[] line : lines) {
+            size += line.length;
+        }
+        nodes = new Transport[size];
+        next = new int[size];
+        prev = new int[size];
+        kind = new byte[size];
+        lineId = new int[size];
+        lineStart = new int[lines.length + 1];
+        indices = new IdentityHashMap<>(size);
+
+        int index = 0;
+        for (int l = 0; l < lines.length; l++) {
+            Transport[] line = lines[l];
+            lineStart[l] = index;
+            for (int j = line.length - 1; j >= 0; j--) { // lines are compiled tail first
+                Transport node = line[j];
+                nodes[index] = node;
+                prev[index] = j == line.length - 1 ? -1 : index - 1;
+                kind[index] = kindOf(node);
+                lineId[index] = l;
+                indices.put(node, index);
+                index++;
+            }
+        }
+        lineStart[lines.length] = index;
+
+        /* next follows the node's own output link, which a hand built grid may point elsewhere */
+        for (int i = 0; i < size; i++) {
+            Path output = nodes[i].getPath().getNext();
+            next[i] = output == null ? -1 : indexOf(output.getNode());
+        }
+    }
+
+    /**
+     * Helper Method:
+     * Classifies a node by its exact class, so that subclasses with their own tick behaviour
+     * are never treated as a plain node. A Producer with a rate other than the default is not
+     * a plain node either, since the array based engines only track its parity.
+     *
+     * @param node the node to classify
+     * @return the kind of the node
+     */
+    private static byte kindOf(Transport node) {
+        if (node.getClass() == Belt.class) {
+            return KIND_BELT;
+        } else if (node.getClass() == Producer.class
+                && ((Producer) node).getRate().isDefault()) {
+            return KIND_PRODUCER;
+        } else if (node.getClass() == Receiver.class) {
+            return KIND_RECEIVER;
+        }
+        return KIND_OTHER;
+    }
+
+    /**
+     * Returns the number of indexed nodes.
+     *
+     * @return number of nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of indexed lines.
+     *
+     * @return number of lines
+     */
+    public int getLineCount() {
+        return lineStart.length - 1;
+    }
+
+    /**
+     * Returns the index of the head of the given line.
+     *
+     * @param line index of the line
+     * @return the first index of the line
+     */
+    public int lineStart(int line) {
+        return lineStart[line];
+    }
+
+    /**
+     * Returns one past the index of the tail of the given line.
+     *
+     * @param line index of the line
+     * @return the end index of the line (exclusive)
+     */
+    public int lineEnd(int line) {
+        return lineStart[line + 1];
+    }
+
+    /**
+     * Returns the index of the node the given index outputs to. In a simple line this is always
+     * index + 1, except at the tail.
+     *
+     * @param index node index
+     * @return the next index, or -1 if the node has no output or outputs to an unindexed node
+     */
+    public int next(int index) {
+        return next[index];
+    }
+
+    /**
+     * Returns the index of the node upstream of the given index.
+     *
+     * @param index node index
+     * @return the previous index, or -1 if index is the head of its line
+     */
+    public int prev(int index) {
+        return prev[index];
+    }
+
+    /**
+     * Returns the kind of the node at the given index.
+     *
+     * @param index node index
+     * @return one of the KIND constants
+     */
+    public byte kind(int index) {
+        return kind[index];
+    }
+
+    /**
+     * Returns the line the node at the given index belongs to.
+     *
+     * @param index node index
+     * @return the line index
+     */
+    public int lineId(int index) {
+        return lineId[index];
+    }
+
+    /**
+     * Returns the Transport node at the given index.
+     *
+     * @param index node index
+     * @return the node
+     */
+    public Transport getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Returns the index given to a Transport node.
+     *
+     * @param node the node to look up
+     * @return the index of the node, or -1 if it is not part of this index
+     */
+    public int indexOf(Transport node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Checks whether every node is a plain Belt, Producer or Receiver and every line is a
+     * simple chain, where each node outputs to the node after it in the index. Grids built by
+     * GameLoader always are; these are the only grids the array based engines can tick.
+     *
+     * @return true if no node is of KIND_OTHER and every next link stays inside its line
+     */
+    public boolean isSimple() {
+        for (int i = 0; i < kind.length; i++) {
+            if (kind[i] == KIND_OTHER) {
+                return false;
+            }
+            int expected = i + 1 == lineStart[lineId[i] + 1] ? -1 : i + 1;
+            if (next[i] != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
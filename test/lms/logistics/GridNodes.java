@@ -0,0 +1,31 @@
+package lms.logistics;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the nodes of a type on a loaded grid, for tests that need to look at them after
+ * ticking.
+ */
+public class GridNodes {
+
+    private GridNodes() {}
+
+    /**
+     * Returns every node on a grid that is an instance of a type, ordered by id.
+     */
+    public static <T extends Transport> List<T> of(GameGrid grid, Class<T> type) {
+        List<T> nodes = new ArrayList<>();
+        for (GridComponent component : grid.getGrid().values()) {
+            if (type.isInstance(component)) {
+                nodes.add(type.cast(component));
+            }
+        }
+        nodes.sort(Comparator.comparingInt(Transport::getId));
+        return nodes;
+    }
+}
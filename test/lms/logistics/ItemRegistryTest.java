@@ -0,0 +1,60 @@
+package lms.logistics;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class ItemRegistryTest {
+
+    @Test
+    public void internSame() {
+        assertSame(ItemRegistry.intern("widget"), ItemRegistry.intern("widget"));
+    }
+
+    @Test
+    public void internDistinctIds() {
+        assertNotEquals(ItemRegistry.intern("nut").getId(), ItemRegistry.intern("screw").getId());
+    }
+
+    @Test
+    public void getById() {
+        Item item = ItemRegistry.intern("washer");
+        assertSame(item, ItemRegistry.get(item.getId()));
+        assertTrue(item.getId() < ItemRegistry.size());
+    }
+
+    @Test
+    public void getEmpty() {
+        assertNull(ItemRegistry.get(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getUnknown() {
+        ItemRegistry.get(ItemRegistry.size());
+    }
+
+    @Test
+    public void internItem() {
+        Item plain = new Item("spring");
+        assertEquals(0, plain.getId());
+        assertSame(ItemRegistry.intern("spring"), ItemRegistry.intern(plain));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void internEmpty() {
+        ItemRegistry.intern("");
+    }
+
+    @Test
+    public void equalsAcrossInterning() {
+        assertEquals(new Item("rivet"), ItemRegistry.intern("rivet"));
+        assertEquals(ItemRegistry.intern("rivet"), new Item("rivet"));
+    }
+
+    @Test
+    public void equalsHashCollision() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(new Item("Aa"), new Item("BB"));
+        assertNotEquals(ItemRegistry.intern("Aa"), ItemRegistry.intern("BB"));
+    }
+}
@@ -0,0 +1,90 @@
+package lms.logistics.belts;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import lms.logistics.GridNodes;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.container.Receiver;
+import lms.simulation.SimulationEngine;
+import org.junit.*;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExpressBeltTest {
+    public ExpressBelt express;
+    public Transport[] belts;
+
+    @Before
+    public void setUp() {
+        express = new ExpressBelt(1, 3);
+        belts = new Transport[] {new Belt(2), new Belt(3), new MultiSlotBelt(4, 2), new Belt(5)};
+        Transport previous = express;
+        for (Transport belt : belts) {
+            previous.setOutput(belt.getPath());
+            belt.setInput(previous.getPath());
+            previous = belt;
+        }
+        express.setInventory(new Item("aa"));
+    }
+
+    @Test
+    public void movesSeveralCells() {
+        belts[2] = new Belt(4);
+        belts[1].setOutput(belts[2].getPath());
+        belts[2].setInput(belts[1].getPath());
+        express.tick();
+        assertNull(express.getInventory());
+        assertEquals(new Item("aa"), belts[2].getInventory());
+    }
+
+    @Test
+    public void stopsAtFullCell() {
+        belts[1].setInventory(new Item("bb"));
+        express.tick();
+        assertEquals(new Item("aa"), belts[0].getInventory());
+    }
+
+    @Test
+    public void stopsInQueue() {
+        express.tick();
+        assertEquals(1, ((MultiSlotBelt) belts[2]).getSize());
+        assertNull(belts[3].getInventory());
+    }
+
+    @Test
+    public void blocked() {
+        belts[0].setInventory(new Item("bb"));
+        express.tick();
+        assertEquals(new Item("aa"), express.getInventory());
+    }
+
+    @Test
+    public void loaded() throws Exception {
+        String save = MultiSlotBeltTest.SAVE.replace("m4", "e2").replace("m2", "b");
+        GameGrid grid = GameLoader.load(new StringReader(save));
+        List<Belt> line = GridNodes.of(grid, Belt.class);
+        assertEquals("e2", line.get(0).getEncoding());
+        SimulationEngine engine = new SimulationEngine(grid);
+        engine.step(2);
+        // the item made on tick 1 passes belt 5 and stops on belt 4 in one tick
+        assertNull(line.get(2).getInventory());
+        assertEquals(new Item("aa"), line.get(1).getInventory());
+        engine.step(98);
+        assertEquals(49, GridNodes.of(grid, Receiver.class).get(0).getDelivered());
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedBadSpeed() throws Exception {
+        GameLoader.load(new StringReader(MultiSlotBeltTest.SAVE.replace("m4", "ex")));
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedHugeSpeed() throws Exception {
+        GameLoader.load(new StringReader(MultiSlotBeltTest.SAVE.replace("m4", "e999999999")));
+    }
+}
@@ -0,0 +1,193 @@
+package lms.logistics.belts;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import lms.logistics.GridNodes;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.container.Receiver;
+import lms.simulation.LineSchedule;
+import lms.simulation.SimulationEngine;
+import org.junit.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JunctionTest {
+    public Junction junction;
+    public Belt left;
+    public Belt right;
+    public Belt out;
+
+    public static final String SPLIT = String.join("\n",
+            "1",
+            "_____",
+            "1",
+            "2",
+            "_____",
+            "aa",
+            "_____",
+            "aa",
+            "aa",
+            "_____",
+            "p j",
+            "r r o",
+            "o o",
+            "_____",
+            "1-2",
+            "2-1,3;4",
+            "3-2",
+            "4-2");
+
+    public static final String MERGE = String.join("\n",
+            "1",
+            "_____",
+            "2",
+            "1",
+            "_____",
+            "aa",
+            "aa",
+            "_____",
+            "aa",
+            "_____",
+            "p p",
+            "j b r",
+            "o o",
+            "_____",
+            "1-3",
+            "2-3",
+            "3-1;2,4",
+            "4-3,5",
+            "5-4");
+
+    public static final String LOOP = String.join("\n",
+            "1",
+            "_____",
+            "1",
+            "1",
+            "_____",
+            "aa",
+            "_____",
+            "aa",
+            "_____",
+            "p j",
+            "b r o",
+            "o o",
+            "_____",
+            "1-2",
+            "2-1;3,3;4",
+            "3-2,2",
+            "4-2");
+
+    @Before
+    public void setUp() {
+        junction = new Junction(1);
+        left = new Belt(2);
+        right = new Belt(3);
+        out = new Belt(4);
+        left.setOutput(junction.getPath());
+        right.setOutput(junction.getPath());
+        junction.addInput(left.getPath());
+        junction.addInput(right.getPath());
+        junction.addOutput(out.getPath());
+        out.setInput(junction.getPath());
+    }
+
+    @Test
+    public void links() {
+        assertEquals(2, junction.getInputs().size());
+        assertSame(left.getPath(), junction.getPath().getPrevious());
+        assertSame(out.getPath(), junction.getPath().getNext());
+        junction.addInput(left.getPath());
+        assertEquals(2, junction.getInputs().size());
+    }
+
+    @Test
+    public void mergeRoundRobin() {
+        List<Item> taken = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            left.setInventory(new Item("left"));
+            right.setInventory(new Item("right"));
+            out.setInventory(null);
+            junction.tick();
+            left.tick();
+            right.tick();
+            taken.add(junction.getInventory());
+        }
+        assertEquals(List.of(new Item("left"), new Item("right"), new Item("left"),
+                new Item("right")), taken);
+    }
+
+    @Test
+    public void mergeWithoutReadyInput() {
+        junction.tick();
+        assertTrue(junction.offer(new Item("aa")));
+    }
+
+    @Test
+    public void splitRoundRobin() {
+        Belt other = new Belt(5);
+        junction.addOutput(other.getPath());
+        other.setInput(junction.getPath());
+        junction.setInventory(new Item("a"));
+        junction.tick();
+        junction.setInventory(new Item("b"));
+        junction.tick();
+        assertEquals(new Item("a"), out.getInventory());
+        assertEquals(new Item("b"), other.getInventory());
+    }
+
+    @Test
+    public void splitBlocked() {
+        out.setInventory(new Item("x"));
+        junction.setInventory(new Item("a"));
+        junction.tick();
+        assertEquals(new Item("a"), junction.getInventory());
+    }
+
+    @Test
+    public void scheduleOrder() throws Exception {
+        GameGrid grid = GameLoader.load(new StringReader(SPLIT));
+        LineSchedule schedule = LineSchedule.compile(grid);
+        assertEquals(4, schedule.getLineCount());
+        List<Integer> tails = new ArrayList<>();
+        for (int l = 0; l < schedule.getLineCount(); l++) {
+            Transport tail = schedule.getLine(l).get(0);
+            tails.add(tail.getId());
+        }
+        assertEquals(List.of(3, 4, 2, 1), tails);
+    }
+
+    @Test
+    public void loadedSplit() throws Exception {
+        GameGrid grid = GameLoader.load(new StringReader(SPLIT));
+        new SimulationEngine(grid).step(100);
+        List<Receiver> receivers = GridNodes.of(grid, Receiver.class);
+        assertEquals(25, receivers.get(0).getDelivered());
+        assertEquals(24, receivers.get(1).getDelivered());
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedLoop() throws Exception {
+        GameLoader.load(new StringReader(LOOP));
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedMergeOfKeys() throws Exception {
+        // the second producer joins through the junction's second input, which pathKeys skips
+        String mixed = MERGE.replace("aa\naa\n_____\naa", "aa\nbb\n_____\naa");
+        GameLoader.load(new StringReader(mixed));
+    }
+
+    @Test
+    public void loadedMerge() throws Exception {
+        GameGrid grid = GameLoader.load(new StringReader(MERGE));
+        new SimulationEngine(grid).step(100);
+        // both producers make an item on the same ticks, so only one gets through each time
+        assertEquals(49, GridNodes.of(grid, Receiver.class).get(0).getDelivered());
+    }
+}
@@ -0,0 +1,116 @@
+package lms.logistics.belts;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import lms.logistics.GridNodes;
+import lms.logistics.Item;
+import lms.logistics.container.Receiver;
+import lms.simulation.SimulationEngine;
+import org.junit.*;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class MultiSlotBeltTest {
+    public MultiSlotBelt belt;
+    public MultiSlotBelt wide;
+    public Belt single;
+
+    public static final String SAVE = String.join("\n",
+            "1",
+            "_____",
+            "1",
+            "1",
+            "_____",
+            "aa",
+            "_____",
+            "aa",
+            "_____",
+            "p m4",
+            "r b m2",
+            "o o",
+            "_____",
+            "1-2",
+            "2-1,5",
+            "5-2,4",
+            "4-5,3",
+            "3-4");
+
+    @Before
+    public void setUp() {
+        belt = new MultiSlotBelt(1, 3);
+        wide = new MultiSlotBelt(2, 3);
+        single = new Belt(3);
+        belt.setOutput(wide.getPath());
+        wide.setInput(belt.getPath());
+        wide.setOutput(single.getPath());
+        single.setInput(wide.getPath());
+    }
+
+    @Test
+    public void offerUntilFull() {
+        assertTrue(belt.offer(new Item("a")));
+        assertTrue(belt.offer(new Item("b")));
+        assertTrue(belt.offer(new Item("c")));
+        assertFalse(belt.offer(new Item("d")));
+        assertEquals(3, belt.getSize());
+        assertEquals(new Item("a"), belt.getInventory());
+        assertEquals(new Item("c"), belt.getItem(2));
+    }
+
+    @Test
+    public void tickMovesAsManyAsTaken() {
+        belt.offer(new Item("a"));
+        belt.offer(new Item("b"));
+        wide.offer(new Item("x"));
+        wide.tick();
+        belt.tick();
+        assertEquals(new Item("x"), single.getInventory());
+        assertEquals(0, belt.getSize());
+        assertEquals(2, wide.getSize());
+        wide.tick();
+        assertEquals(2, wide.getSize());
+    }
+
+    @Test
+    public void setInventory() {
+        belt.offer(new Item("a"));
+        belt.offer(new Item("b"));
+        belt.setInventory(new Item("c"));
+        assertEquals(1, belt.getSize());
+        assertEquals(new Item("c"), belt.getInventory());
+        belt.setInventory(null);
+        assertNull(belt.getInventory());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityZero() {
+        new MultiSlotBelt(1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityTooLarge() {
+        new MultiSlotBelt(1, MultiSlotBelt.MAX_CAPACITY + 1);
+    }
+
+    @Test
+    public void loaded() throws Exception {
+        GameGrid grid = GameLoader.load(new StringReader(SAVE));
+        MultiSlotBelt first = GridNodes.of(grid, MultiSlotBelt.class).get(0);
+        assertEquals("m4", first.getEncoding());
+        new SimulationEngine(grid).step(101);
+        assertEquals(49, GridNodes.of(grid, Receiver.class).get(0).getDelivered());
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedBadCapacity() throws Exception {
+        GameLoader.load(new StringReader(SAVE.replace("m4", "m0")));
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedHugeCapacity() throws Exception {
+        GameLoader.load(new StringReader(SAVE.replace("m4", "m999999999")));
+    }
+}
@@ -0,0 +1,132 @@
+package lms.logistics.container;
+
+import lms.exceptions.FileFormatException;
+import lms.grid.GameGrid;
+import lms.io.GameLoader;
+import lms.logistics.GridNodes;
+import lms.logistics.Item;
+import lms.simulation.SimulationEngine;
+import lms.simulation.TopologyIndex;
+import org.junit.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProductionRateTest {
+
+    public static final String SAVE = String.join("\n",
+            "1",
+            "_____",
+            "1",
+            "1",
+            "_____",
+            "aa 3 1",
+            "_____",
+            "aa",
+            "_____",
+            "p b",
+            "r b b",
+            "o o",
+            "_____",
+            "1-2",
+            "2-1,5",
+            "5-2,4",
+            "4-5,3",
+            "3-4");
+
+    /**
+     * Ticks a Producer with nothing after it, returning the ticks it made an item on.
+     */
+    private static List<Integer> emissions(ProductionRate rate, int ticks) {
+        Producer producer = new Producer(1, new Item("aa"), rate);
+        List<Integer> made = new ArrayList<>();
+        for (int tick = 1; tick <= ticks; tick++) {
+            boolean ready = producer.isReady();
+            producer.tick();
+            if (rate.emitsAt(producer.getCounter())) {
+                made.add(tick);
+            }
+            assertEquals(ready, rate.emitsAt(producer.getCounter()));
+        }
+        return made;
+    }
+
+    @Test
+    public void defaultRate() {
+        assertTrue(ProductionRate.DEFAULT.isDefault());
+        assertEquals(List.of(1, 3, 5, 7), emissions(ProductionRate.DEFAULT, 8));
+    }
+
+    @Test
+    public void periodAndPhase() {
+        assertEquals(List.of(2, 5, 8), emissions(new ProductionRate(3, 0), 9));
+        assertEquals(List.of(1, 4, 7), emissions(new ProductionRate(3, 1), 9));
+        assertFalse(new ProductionRate(3, 1).isDefault());
+    }
+
+    @Test
+    public void burst() {
+        ProductionRate rate = ProductionRate.parse("4 0 0111");
+        assertEquals(List.of(1, 2, 3, 5, 6, 7), emissions(rate, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patternLength() {
+        ProductionRate.parse("4 0 011");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void phaseOutOfCycle() {
+        new ProductionRate(2, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void periodTooLong() {
+        ProductionRate.parse("999999999");
+    }
+
+    @Test
+    public void loaded() throws Exception {
+        GameGrid grid = GameLoader.load(new StringReader(SAVE));
+        Producer producer = GridNodes.of(grid, Producer.class).get(0);
+        Receiver receiver = GridNodes.of(grid, Receiver.class).get(0);
+        assertEquals(3, producer.getRate().getPeriod());
+        SimulationEngine engine = new SimulationEngine(grid);
+        assertFalse(engine.getTopology().isSimple());
+        engine.fastForward(100);
+        // made on ticks 1, 4, ..., 94, and delivered four ticks later
+        assertEquals(32, receiver.getDelivered());
+        assertEquals(TopologyIndex.KIND_OTHER, engine.getTopology().kind(0));
+    }
+
+    @Test
+    public void loadedTrailingSpace() throws Exception {
+        String save = SAVE.replace("aa 3 1", "aa ").replace("\naa\n", "\naa \n");
+        GameGrid grid = GameLoader.load(new StringReader(save));
+        Producer producer = GridNodes.of(grid, Producer.class).get(0);
+        assertTrue(producer.getRate().isDefault());
+        assertEquals(new Item("aa "), producer.getKey());
+        GameLoader.load(new StringReader(SAVE.replace("aa 3 1", "aa 3 1 ")));
+    }
+
+    @Test
+    public void loadedKeyWithSpaces() throws Exception {
+        String save = SAVE.replace("aa 3 1", "iron ore").replace("\naa\n", "\niron ore\n");
+        Producer producer = GridNodes.of(GameLoader.load(new StringReader(save)),
+                Producer.class).get(0);
+        assertTrue(producer.getRate().isDefault());
+        assertEquals(new Item("iron ore"), producer.getKey());
+        save = SAVE.replace("aa 3 1", "iron ore 3 1").replace("\naa\n", "\niron ore\n");
+        producer = GridNodes.of(GameLoader.load(new StringReader(save)), Producer.class).get(0);
+        assertEquals(3, producer.getRate().getPeriod());
+        assertEquals(new Item("iron ore"), producer.getKey());
+    }
+
+    @Test(expected = FileFormatException.class)
+    public void loadedPeriodTooLong() throws Exception {
+        GameLoader.load(new StringReader(SAVE.replace("aa 3 1", "aa 999999999")));
+    }
+}
@@ -0,0 +1,109 @@
+package lms.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the steady-state tick path allocates nothing, by reading the bytes allocated by
+ * the test thread before and after thousands of ticks.
+ */
+public class AllocationTest {
+
+    /**
+     * Most bytes a measured run may allocate, to allow for the measurement itself. Any
+     * allocation per tick adds up to far more than this over TICKS ticks.
+     */
+    private static final long TOLERANCE = 1024;
+
+    private static final int TICKS = 5000;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setup() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Returns the bytes allocated by a steady-state engine over TICKS single steps followed
+     * by one run of TICKS ticks.
+     */
+    private long allocated(TickStrategy.Factory factory) {
+        SimulationEngine engine = new SimulationEngine(
+                StrategyEquivalenceTest.randomFactory(11, 30, false, false), factory);
+        for (int i = 0; i < 20; i++) { // warm up the schedule, strategy and JIT
+            engine.step(TICKS / 10);
+            engine.step();
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < TICKS; i++) {
+            engine.step();
+        }
+        engine.step(TICKS);
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    private void assertNoAllocation(TickStrategy.Factory factory) {
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        long bytes = allocated(factory);
+        assertTrue(bytes + " bytes allocated", bytes <= TOLERANCE);
+    }
+
+    @Test
+    public void objectStrategy() {
+        assertNoAllocation(ObjectStrategy::new);
+    }
+
+    @Test
+    public void arrayStrategy() {
+        assertNoAllocation(ArrayStrategy::new);
+    }
+
+    @Test
+    public void bitsetStrategy() {
+        assertNoAllocation(BitsetStrategy::new);
+    }
+
+    @Test
+    public void segmentStrategy() {
+        assertNoAllocation(SegmentStrategy::new);
+    }
+
+    @Test
+    public void activeSetStrategy() {
+        assertNoAllocation(ActiveSetStrategy::new);
+    }
+
+    @Test
+    public void eventStrategy() {
+        assertNoAllocation(EventStrategy::new);
+    }
+
+    @Test
+    public void analyticStrategy() {
+        assertNoAllocation(AnalyticStrategy::new);
+    }
+
+    @Test
+    public void cycleStrategy() {
+        assertNoAllocation(CycleStrategy::new);
+    }
+
+    @Test
+    public void bufferedStrategy() {
+        assertNoAllocation(BufferedStrategy::new);
+    }
+
+    @Test
+    public void offHeapStrategy() {
+        assertNoAllocation(OffHeapStrategy::new);
+    }
+}
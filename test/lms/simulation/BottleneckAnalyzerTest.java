@@ -0,0 +1,87 @@
+package lms.simulation;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+public class BottleneckAnalyzerTest {
+    public Producer producer;
+    public Belt belt1;
+    public Belt belt2;
+    public Belt belt3;
+    public Receiver receiver;
+    public GameGrid grid;
+    public SimulationEngine engine;
+
+    @Before
+    public void setUp() {
+        LineFixture line = new LineFixture();
+        producer = line.producer;
+        belt1 = line.belt1;
+        belt2 = line.belt2;
+        belt3 = line.belt3;
+        receiver = line.receiver;
+        grid = line.grid;
+        engine = new SimulationEngine(grid);
+    }
+
+    @Test
+    public void flowingNeverStalls() {
+        BottleneckAnalyzer analyzer = engine.profile(100);
+        assertEquals(100, analyzer.getTicks());
+        assertEquals(100, engine.getTickCount());
+        assertEquals(receiver.getDelivered(), analyzer.getDelivered(0));
+        assertEquals(0.48, analyzer.getThroughput(0), 1e-9);
+        assertEquals(0.5, analyzer.getCeiling(0), 1e-9);
+        assertNull(analyzer.getQueueNode(0));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, analyzer.getStalls(0, i));
+        }
+    }
+
+    @Test
+    public void deadEndQueues() {
+        belt2.setOutput(null);
+        belt3.setInput(null);
+        BottleneckAnalyzer analyzer = engine.profile(10);
+        assertSame(belt2, engine.getSchedule().getLine(0).get(0));
+        assertEquals(0, analyzer.getStalls(0, 0));
+        assertEquals(7, analyzer.getStalls(0, 1));
+        assertEquals(4, analyzer.getFirstStall(0, 1));
+        assertEquals(3, analyzer.getStalls(0, 2));
+        assertEquals(5, analyzer.getFirstStall(0, 2));
+        assertSame(belt1, analyzer.getQueueNode(0));
+        String separator = System.lineSeparator();
+        assertEquals("0: 0.000/0.500 items/tick, queues at 2" + separator
+                + "1: 0.000/0.000 items/tick, no queue" + separator, analyzer.getReport());
+    }
+
+    @Test
+    public void nodeTable() {
+        String[] rows = engine.profile(1).getNodeTable().split(System.lineSeparator());
+        assertEquals(6, rows.length);
+        assertArrayEquals(new String[] {"5", "0", "0", "0"}, rows[1].trim().split(" +"));
+    }
+
+    @Test
+    public void wrongKeyRecorded() {
+        Receiver other = new Receiver(5, new Item("bb"));
+        belt3.setOutput(other.getPath());
+        other.setInput(belt3.getPath());
+        grid.setCoordinate(new Coordinate(1, -1), other);
+        BottleneckAnalyzer analyzer = engine.profile(10);
+        assertEquals(0, analyzer.getDelivered(0));
+        assertTrue(engine.getFaults().getFaultCount() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeTicks() {
+        engine.profile(-1);
+    }
+}
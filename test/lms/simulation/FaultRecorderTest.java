@@ -0,0 +1,117 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.ItemRegistry;
+import lms.logistics.container.Receiver;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FaultRecorderTest {
+
+    private FaultRecorder faults;
+
+    @Before
+    public void setup() {
+        faults = new FaultRecorder(4);
+    }
+
+    @Test
+    public void keepsMostRecent() {
+        int aa = ItemRegistry.intern(new Item("aa")).getId();
+        int bb = ItemRegistry.intern(new Item("bb")).getId();
+        for (int i = 1; i <= 6; i++) {
+            faults.record(i, 10 + i, aa, bb);
+        }
+        assertEquals(6, faults.getFaultCount());
+        assertEquals(4, faults.size());
+        assertEquals(3, faults.getTick(0));
+        assertEquals(16, faults.getTransportId(3));
+        assertEquals(new Item("aa"), faults.getExpected(1));
+        assertEquals(new Item("bb"), faults.getActual(2));
+    }
+
+    @Test
+    public void repeatsCountedOnce() {
+        faults.record(5, 1, 0, 0, 1000);
+        assertEquals(1000, faults.getFaultCount());
+        assertEquals(1, faults.size());
+        assertEquals(5, faults.getTick(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void emptyIndex() {
+        faults.getTick(0);
+    }
+
+    @Test
+    public void clear() {
+        faults.record(1, 1, 0, 0);
+        faults.clear();
+        assertEquals(0, faults.getFaultCount());
+        assertEquals(0, faults.size());
+    }
+
+    @Test(expected = BadStateException.class)
+    public void strict() {
+        faults.setStrict(true);
+        faults.record(1, 1, 0, 0);
+    }
+
+    @Test
+    public void engineRecordsFaults() {
+        Receiver receiver = new Receiver(1, new Item("aa"));
+        receiver.setPending(new Item("bb"));
+        GameGrid grid = new GameGrid(1);
+        grid.setCoordinate(new Coordinate(0, 0), receiver);
+        SimulationEngine engine = new SimulationEngine(grid);
+        engine.step(3);
+        engine.step(2);
+        FaultRecorder recorded = engine.getFaults();
+        assertEquals(5, recorded.getFaultCount());
+        assertEquals(1, recorded.getTick(0));
+        assertEquals(5, recorded.getTick(4));
+        assertEquals(1, recorded.getTransportId(4));
+        assertEquals(new Item("bb"), recorded.getActual(4));
+        assertEquals(new Item("bb"), receiver.getPending());
+    }
+
+    @Test(expected = BadStateException.class)
+    public void engineStrict() {
+        Receiver receiver = new Receiver(1, new Item("aa"));
+        receiver.setPending(new Item("bb"));
+        GameGrid grid = new GameGrid(1);
+        grid.setCoordinate(new Coordinate(0, 0), receiver);
+        SimulationEngine engine = new SimulationEngine(grid, ArrayStrategy::new);
+        engine.getFaults().setStrict(true);
+        engine.step();
+    }
+
+    @Test
+    public void objectStrictLeavesGrid() {
+        Receiver first = new Receiver(1, new Item("aa"));
+        Receiver second = new Receiver(2, new Item("aa"));
+        first.setPending(new Item("aa"));
+        second.setPending(new Item("bb"));
+        GameGrid grid = new GameGrid(1);
+        grid.setCoordinate(new Coordinate(0, 0), first);
+        grid.setCoordinate(new Coordinate(1, 0), second);
+        SimulationEngine engine = new SimulationEngine(grid);
+        engine.getFaults().setStrict(true);
+        boolean thrown = false;
+        try {
+            engine.step();
+        } catch (BadStateException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertEquals(0, engine.getTickCount());
+        assertEquals(1, engine.getFaults().getFaultCount());
+        assertEquals(0, first.getDelivered());
+        assertEquals(new Item("aa"), first.getPending());
+    }
+}
@@ -0,0 +1,148 @@
+package lms.simulation;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.ProductionRate;
+import lms.logistics.container.Receiver;
+import org.junit.*;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LineAnalysisTest {
+    public Producer producer;
+    public Belt belt1;
+    public Belt belt2;
+    public Belt belt3;
+    public Receiver receiver;
+    public GameGrid grid;
+    public SimulationEngine engine;
+
+    @Before
+    public void setUp() {
+        LineFixture line = new LineFixture();
+        producer = line.producer;
+        belt1 = line.belt1;
+        belt2 = line.belt2;
+        belt3 = line.belt3;
+        receiver = line.receiver;
+        grid = line.grid;
+        engine = new SimulationEngine(grid);
+    }
+
+    /**
+     * Cuts the line after belt2, leaving a dead end from the producer and a line with no
+     * producer.
+     */
+    public void cut() {
+        belt2.setOutput(null);
+        belt3.setInput(null);
+    }
+
+    @Test
+    public void flowing() {
+        LineAnalysis analysis = engine.getAnalysis();
+        assertEquals(1, analysis.getLineCount());
+        assertEquals(LineState.FLOWING, analysis.getState(0));
+        assertFalse(analysis.isInert(0));
+        assertSame(engine.getSchedule(), analysis.prune());
+    }
+
+    @Test
+    public void wrongKeyBlocked() {
+        Receiver other = new Receiver(5, new Item("bb"));
+        belt3.setOutput(other.getPath());
+        other.setInput(belt3.getPath());
+        grid.setCoordinate(new Coordinate(1, -1), other);
+        LineAnalysis analysis = engine.getAnalysis();
+        assertEquals(LineState.BLOCKED, analysis.getState(0));
+        assertFalse(analysis.isInert(0));
+    }
+
+    @Test
+    public void cutLines() {
+        cut();
+        LineAnalysis analysis = engine.getAnalysis();
+        assertEquals(2, analysis.getLineCount());
+        assertEquals(LineState.BLOCKED, analysis.getState(0));
+        assertEquals(LineState.UNREACHABLE, analysis.getState(1));
+        assertFalse(analysis.isInert(0));
+        assertTrue(analysis.isInert(1));
+        assertEquals(1, analysis.count(LineState.BLOCKED));
+        assertEquals(0, analysis.count(LineState.FLOWING));
+        String separator = System.lineSeparator();
+        assertEquals("0: 1-3 BLOCKED" + separator + "1: 4-5 UNREACHABLE inert" + separator,
+                analysis.toString());
+    }
+
+    @Test
+    public void unreachableWithItemsNotInert() {
+        cut();
+        belt3.setInventory(new Item("aa"));
+        assertFalse(engine.getAnalysis().isInert(1));
+    }
+
+    @Test
+    public void silentProducerUnreachable() {
+        Producer silent = new Producer(1, new Item("aa"),
+                new ProductionRate(2, 0, new boolean[] {false, false}));
+        silent.setOutput(belt1.getPath());
+        belt1.setInput(silent.getPath());
+        grid.setCoordinate(new Coordinate(0, 0), silent);
+        assertEquals(LineState.UNREACHABLE, engine.getAnalysis().getState(0));
+        assertTrue(engine.getAnalysis().isInert(0));
+    }
+
+    @Test
+    public void fullDeadEndInert() {
+        cut();
+        belt1.setInventory(new Item("aa"));
+        belt2.setInventory(new Item("aa"));
+        assertTrue(engine.getAnalysis().isInert(0));
+    }
+
+    @Test
+    public void pruned() {
+        cut();
+        engine.setPruning(true);
+        assertEquals(2, engine.getAnalysis().getLineCount());
+        assertEquals(1, engine.getSchedule().getLineCount());
+        assertEquals(List.of(belt2, belt1, producer), engine.getSchedule().getLine(0));
+        engine.step(3);
+        assertEquals(new Item("aa"), belt2.getInventory());
+        assertNull(belt3.getInventory());
+    }
+
+    @Test
+    public void prunedRevivedWhenEmptied() {
+        cut();
+        belt1.setInventory(new Item("aa"));
+        belt2.setInventory(new Item("aa"));
+        engine.setPruning(true);
+        assertEquals(0, engine.getSchedule().getLineCount());
+        LineAnalysis analysis = engine.getAnalysis();
+        assertTrue(analysis.isCurrent());
+        belt2.setInventory(null);
+        assertFalse(analysis.isCurrent());
+        engine.step();
+        assertEquals(1, engine.getSchedule().getLineCount());
+        assertEquals(new Item("aa"), belt2.getInventory());
+        assertFalse(engine.getAnalysis().isInert(0));
+    }
+
+    @Test
+    public void prunedGoesStale() {
+        cut();
+        engine.setPruning(true);
+        LineSchedule schedule = engine.getSchedule();
+        belt2.setOutput(belt3.getPath());
+        belt3.setInput(belt2.getPath());
+        assertNotSame(schedule, engine.getSchedule());
+        assertEquals(1, engine.getSchedule().getLineCount());
+        assertEquals(LineState.FLOWING, engine.getAnalysis().getState(0));
+    }
+}
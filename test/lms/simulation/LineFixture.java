@@ -0,0 +1,43 @@
+package lms.simulation;
+
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.logistics.Item;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+
+/**
+ * A single line from a Producer through three Belts to a Receiver, both keyed "aa", placed
+ * on a grid of range 2. The same line is loaded from SimulationEngineTest.SAVE.
+ */
+class LineFixture {
+    final Producer producer;
+    final Belt belt1;
+    final Belt belt2;
+    final Belt belt3;
+    final Receiver receiver;
+    final GameGrid grid;
+
+    LineFixture() {
+        producer = new Producer(1, new Item("aa"));
+        belt1 = new Belt(2);
+        belt2 = new Belt(3);
+        belt3 = new Belt(4);
+        receiver = new Receiver(5, new Item("aa"));
+        producer.setOutput(belt1.getPath());
+        belt1.setInput(producer.getPath());
+        belt1.setOutput(belt2.getPath());
+        belt2.setInput(belt1.getPath());
+        belt2.setOutput(belt3.getPath());
+        belt3.setInput(belt2.getPath());
+        belt3.setOutput(receiver.getPath());
+        receiver.setInput(belt3.getPath());
+        grid = new GameGrid(2);
+        grid.setCoordinate(new Coordinate(0, 0), producer);
+        grid.setCoordinate(new Coordinate(1, 0), belt1);
+        grid.setCoordinate(new Coordinate(2, 0), belt2);
+        grid.setCoordinate(new Coordinate(2, -1), belt3);
+        grid.setCoordinate(new Coordinate(1, -1), receiver);
+    }
+}
@@ -0,0 +1,107 @@
+package lms.simulation;
+
+import lms.exceptions.UnsupportedActionException;
+import lms.logistics.Item;
+import lms.logistics.Path;
+import lms.logistics.Transport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OffHeapStateTest {
+
+    private OffHeapState state;
+
+    @Before
+    public void setup() {
+        state = new OffHeapState(20, 4);
+        state.addLine(new Item("aa"), 3, new Item("aa"));
+        state.addLine(new Item("bb"), 2, null);
+    }
+
+    @Test
+    public void layout() {
+        assertEquals(8, state.size());
+        assertEquals(2, state.getLineCount());
+        assertEquals(5, state.lineStart(1));
+        assertEquals(8, state.lineEnd(1));
+        assertEquals(TopologyIndex.KIND_PRODUCER, state.kind(0));
+        assertEquals(TopologyIndex.KIND_RECEIVER, state.kind(4));
+        assertEquals(6, state.getId(5));
+        assertEquals(new Item("aa"), state.getInventory(0));
+        assertNull(state.getInventory(1));
+        assertEquals(new Item("bb"), state.getKey(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void full() {
+        state.addLine(null, 13, null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBounds() {
+        state.getInventory(8);
+    }
+
+    @Test
+    public void views() {
+        Transport belt = state.getNode(2);
+        assertEquals(3, belt.getId());
+        assertEquals("b", belt.getEncoding());
+        assertEquals("p", belt.getPath().getPrevious().getPrevious().getNode().getEncoding());
+        assertEquals(state.getNode(4).getPath(), belt.getPath().tail());
+        assertNull(state.getNode(4).getOutput());
+        assertNull(state.getNode(5).getInput());
+
+        belt.setInventory(new Item("aa"));
+        assertEquals(new Item("aa"), state.getInventory(2));
+
+        List<Integer> ids = new ArrayList<>();
+        belt.getPath().applyAll(node -> ids.add(node.getId()));
+        assertEquals(List.of(5, 4, 3, 2, 1), ids);
+    }
+
+    @Test(expected = UnsupportedActionException.class)
+    public void viewsNotRelinked() {
+        state.getNode(1).getPath().setNext((Path) null);
+    }
+
+    @Test
+    public void tenMillionNodes() {
+        BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+                .stream().filter(pool -> pool.getName().equals("direct")).findFirst().get();
+        long before = direct.getMemoryUsed();
+        OffHeapState large = new OffHeapState(10_000_000, 10_000);
+        for (int l = 0; l < 10_000; l++) {
+            large.addLine(new Item("aa"), 998, new Item("aa"));
+        }
+        // the records are in direct memory, not on the heap
+        assertTrue(large.nodes.isDirect());
+        assertTrue(direct.getMemoryUsed() - before >= 10_000_000L * OffHeapState.NODE_BYTES);
+        OffHeapStrategy strategy = new OffHeapStrategy(large, new FaultRecorder());
+        strategy.load();
+        strategy.advance(10);
+        strategy.store();
+        int last = large.lineStart(9_999);
+        assertEquals(new Item("aa"), large.getInventory(last + 10));
+        assertNull(large.getInventory(last + 11));
+    }
+
+    @Test
+    public void tickWithoutGrid() {
+        OffHeapStrategy strategy = new OffHeapStrategy(state, new FaultRecorder());
+        strategy.load();
+        strategy.advance(1001);
+        strategy.store();
+        assertEquals(499, state.getDelivered(0));
+        assertEquals(0, state.getDelivered(1));
+        assertEquals(new Item("bb"), state.getInventory(6));
+        assertEquals(new Item("bb"), state.getInventory(7));
+    }
+}
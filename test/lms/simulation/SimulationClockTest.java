@@ -0,0 +1,114 @@
+package lms.simulation;
+
+import lms.io.GameLoader;
+import org.junit.*;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class SimulationClockTest {
+    public long now;
+    public SimulationEngine engine;
+    public SimulationClock clock;
+
+    @Before
+    public void setUp() throws Exception {
+        now = 0;
+        engine = new SimulationEngine(GameLoader.load(new StringReader(SimulationEngineTest.SAVE)));
+        clock = new SimulationClock(500, () -> now);
+    }
+
+    @Test
+    public void ticksAtTargetRate() {
+        clock.runFrame(engine);
+        for (int frame = 0; frame < 60; frame++) {
+            now += 1_000_000_000L / 60;
+            clock.runFrame(engine);
+        }
+        assertEquals(499, engine.getTickCount());
+        assertEquals(0, clock.getSkippedFrames());
+    }
+
+    @Test
+    public void noDrift() {
+        clock.runFrame(engine);
+        for (int frame = 0; frame < 3000; frame++) {
+            now += 7_000_000L;
+            clock.runFrame(engine);
+        }
+        assertEquals(10_500, engine.getTickCount(), 1);
+    }
+
+    @Test
+    public void speedMultiplier() {
+        clock.setSpeed(2);
+        assertEquals(1000, clock.getEffectiveRate(), 0);
+        clock.runFrame(engine);
+        now += 100_000_000L;
+        assertEquals(100, clock.runFrame(engine));
+    }
+
+    @Test
+    public void lateFrameCatchesUp() {
+        clock.runFrame(engine);
+        now += 250_000_000L;
+        assertEquals(125, clock.runFrame(engine));
+        assertEquals(14, clock.getSkippedFrames());
+    }
+
+    @Test
+    public void catchUpLimited() {
+        clock.runFrame(engine);
+        now += 3_000_000_000L;
+        assertEquals(500, clock.runFrame(engine));
+        assertEquals(1000, clock.getDroppedTicks());
+    }
+
+    @Test
+    public void resetForgetsPause() {
+        clock.runFrame(engine);
+        now += 5_000_000_000L;
+        clock.reset();
+        assertEquals(0, clock.runFrame(engine));
+        now += 10_000_000L;
+        assertEquals(5, clock.runFrame(engine));
+    }
+
+    @Test
+    public void measuredRate() {
+        clock.runFrame(engine);
+        for (int frame = 0; frame < 100; frame++) {
+            now += 20_000_000L;
+            clock.runFrame(engine);
+        }
+        assertEquals(500, clock.getMeasuredRate(), 1);
+        assertEquals(50, clock.getMeasuredFrameRate(), 1);
+    }
+
+    @Test
+    public void uncapped() {
+        SimulationClock fast = new SimulationClock(1, () -> now += 1_000_000L);
+        fast.setUncapped(true);
+        long ran = fast.runFrame(engine);
+        assertTrue(ran > 1);
+        assertEquals(ran, engine.getTickCount());
+    }
+
+    @Test
+    public void uncappedLeavesHalfFrame() {
+        SimulationClock fast = new SimulationClock(1, () -> now += 1_000_000L);
+        fast.setUncapped(true);
+        for (int frame = 0; frame < 10; frame++) {
+            long start = now;
+            fast.runFrame(engine);
+            // one read to start the frame, then one after each batch of ticks
+            assertTrue(now - start <= 1_000_000_000L / 60 / 2 + 2_000_000L);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badSpeed() {
+        clock.setSpeed(0);
+    }
+}
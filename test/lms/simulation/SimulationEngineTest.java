@@ -0,0 +1,256 @@
+package lms.simulation;
+
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.io.GameLoader;
+import lms.logistics.Item;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.*;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulationEngineTest {
+    public Producer producer;
+    public Belt belt1;
+    public Belt belt2;
+    public Belt belt3;
+    public Receiver receiver;
+    public GameGrid grid;
+    public SimulationEngine engine;
+
+    public static final String SAVE = String.join("\n",
+            "1",
+            "_____",
+            "1",
+            "1",
+            "_____",
+            "aa",
+            "_____",
+            "aa",
+            "_____",
+            "p b",
+            "r b b",
+            "o o",
+            "_____",
+            "1-2",
+            "2-1,5",
+            "5-2,4",
+            "4-5,3",
+            "3-4");
+
+    @Before
+    public void setUp() throws Exception {
+        LineFixture line = new LineFixture();
+        producer = line.producer;
+        belt1 = line.belt1;
+        belt2 = line.belt2;
+        belt3 = line.belt3;
+        receiver = line.receiver;
+        grid = line.grid;
+        engine = new SimulationEngine(grid);
+    }
+
+    @Test
+    public void stepProduces() {
+        engine.step();
+        assertEquals(new Item("aa"), belt1.getInventory());
+        assertNull(belt2.getInventory());
+    }
+
+    @Test
+    public void stepMovesAlong() {
+        engine.step(2);
+        assertNull(belt1.getInventory());
+        assertEquals(new Item("aa"), belt2.getInventory());
+        assertEquals(2, engine.getTickCount());
+    }
+
+    @Test
+    public void runUntil() {
+        assertEquals(3, engine.runUntil(e -> belt3.getInventory() != null));
+        assertEquals(new Item("aa"), belt1.getInventory());
+        assertEquals(3, engine.getTickCount());
+    }
+
+    @Test
+    public void runUntilAlreadyTrue() {
+        assertEquals(0, engine.runUntil(e -> true));
+    }
+
+    @Test
+    public void runUntilLimit() {
+        assertEquals(10, engine.runUntil(e -> false, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stepNegative() {
+        engine.step(-1);
+    }
+
+    @Test
+    public void ticksPerSecond() {
+        assertEquals(0.0, engine.getTicksPerSecond(), 0.0);
+        engine.step(1000);
+        assertTrue(engine.getTicksPerSecond() > 0);
+    }
+
+    @Test
+    public void loadedGrid() throws Exception {
+        SimulationEngine loaded = new SimulationEngine(GameLoader.load(new StringReader(SAVE)));
+        loaded.step(100);
+        assertEquals(100, loaded.getTickCount());
+    }
+
+    @Test
+    public void fastForwardMatchesStep() throws Exception {
+        SimulationEngine stepped = new SimulationEngine(GameLoader.load(new StringReader(SAVE)));
+        SimulationEngine skipped = new SimulationEngine(GameLoader.load(new StringReader(SAVE)));
+        stepped.step(1001);
+        skipped.fastForward(1001);
+        assertEquals(StrategyEquivalenceTest.state(stepped.getGrid()),
+                StrategyEquivalenceTest.state(skipped.getGrid()));
+        assertEquals(1001, skipped.getTickCount());
+    }
+
+    @Test
+    public void fastForwardDays() {
+        engine.fastForward(1_000_000_000_000L);
+        assertEquals(499_999_999_998L, receiver.getDelivered());
+        assertEquals(1_000_000_000_000L, engine.getTickCount());
+        engine.step(4);
+        assertEquals(500_000_000_000L, receiver.getDelivered());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fastForwardNegative() {
+        engine.fastForward(-1);
+    }
+
+    /**
+     * Runs CycleStrategy over SAVE with several advances after one load, returning how much
+     * the Receiver delivered compared with stepping the same ticks normally.
+     */
+    private static long[] cycleAgainstStep(long... runs) throws Exception {
+        long[] delivered = new long[2];
+        long total = 0;
+        for (long run : runs) {
+            total += run;
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            GameGrid grid = GameLoader.load(new StringReader(SAVE));
+            if (pass == 0) {
+                CycleStrategy strategy = new CycleStrategy(LineSchedule.compile(grid),
+                        new FaultRecorder());
+                strategy.load();
+                for (long run : runs) {
+                    strategy.advance(run);
+                }
+                strategy.store();
+            } else {
+                new SimulationEngine(grid).step(total);
+            }
+            for (GridComponent component : grid.getGrid().values()) {
+                if (component instanceof Receiver found) {
+                    delivered[pass] = found.getDelivered();
+                }
+            }
+        }
+        return delivered;
+    }
+
+    @Test
+    public void cycleRepeatedAdvance() throws Exception {
+        long[] brief = cycleAgainstStep(7, 9);
+        assertEquals(6, brief[1]);
+        assertEquals(brief[1], brief[0]);
+        long[] longer = cycleAgainstStep(10_001, 10_003);
+        assertEquals(longer[1], longer[0]);
+    }
+
+    @Test
+    public void cyclePeriod() {
+        CycleStrategy strategy = new CycleStrategy(engine.getSchedule(), new FaultRecorder());
+        strategy.load();
+        strategy.advance(1_000_000_000L);
+        strategy.store();
+        assertEquals(2, strategy.getPeriod());
+        assertEquals(499_999_998L, receiver.getDelivered());
+    }
+
+    @Test
+    public void cycleKeptBetweenSteps() {
+        CycleStrategy strategy = new CycleStrategy(engine.getSchedule(), new FaultRecorder());
+        for (int i = 0; i < 20; i++) {
+            strategy.load();
+            strategy.advance(1);
+            strategy.store();
+        }
+        // single steps find the period, so a longer one can skip
+        assertEquals(2, strategy.getPeriod());
+        strategy.load();
+        strategy.advance(1_000_000_000L);
+        strategy.store();
+        assertEquals(500_000_008L, receiver.getDelivered());
+        // a change made outside the strategy starts detection again
+        belt1.setInventory(new Item("aa"));
+        strategy.load();
+        assertEquals(0, strategy.getPeriod());
+    }
+
+    @Test
+    public void scheduleOrder() {
+        LineSchedule schedule = engine.getSchedule();
+        assertEquals(1, schedule.getLineCount());
+        assertEquals(List.of(receiver, belt3, belt2, belt1, producer), schedule.getLine(0));
+    }
+
+    @Test
+    public void scheduleCompiledOnce() {
+        LineSchedule schedule = engine.getSchedule();
+        engine.step(10);
+        assertSame(schedule, engine.getSchedule());
+    }
+
+    @Test
+    public void scheduleRecompiledOnRelink() {
+        LineSchedule schedule = engine.getSchedule();
+        belt2.setOutput(null);
+        belt3.setInput(null);
+        assertNotSame(schedule, engine.getSchedule());
+        assertEquals(2, engine.getSchedule().getLineCount());
+    }
+
+    @Test
+    public void topologyContiguous() {
+        TopologyIndex topology = engine.getTopology();
+        assertEquals(5, topology.size());
+        assertEquals(1, topology.getLineCount());
+        assertEquals(0, topology.indexOf(producer));
+        assertEquals(4, topology.indexOf(receiver));
+        assertEquals(TopologyIndex.KIND_PRODUCER, topology.kind(0));
+        assertEquals(TopologyIndex.KIND_BELT, topology.kind(2));
+        assertEquals(TopologyIndex.KIND_RECEIVER, topology.kind(4));
+        assertEquals(-1, topology.prev(0));
+        assertEquals(3, topology.next(2));
+        assertEquals(-1, topology.next(4));
+        assertSame(belt2, topology.getNode(2));
+    }
+
+    @Test
+    public void topologyLines() {
+        belt2.setOutput(null);
+        belt3.setInput(null);
+        TopologyIndex topology = engine.getTopology();
+        assertEquals(2, topology.getLineCount());
+        for (int l = 0; l < topology.getLineCount(); l++) {
+            for (int i = topology.lineStart(l); i < topology.lineEnd(l); i++) {
+                assertEquals(l, topology.lineId(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,459 @@
+package lms.simulation;
+
+import lms.exceptions.BadStateException;
+import lms.exceptions.UnsupportedActionException;
+import lms.grid.Coordinate;
+import lms.grid.GameGrid;
+import lms.grid.GridComponent;
+import lms.logistics.Item;
+import lms.logistics.Transport;
+import lms.logistics.belts.Belt;
+import lms.logistics.container.Producer;
+import lms.logistics.container.Receiver;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs every alternative TickStrategy side by side with ObjectStrategy on the same randomly
+ * built factory and checks that the grids always end up in the same state.
+ */
+public class StrategyEquivalenceTest {
+
+    /**
+     * Builds a factory of random lines on a fresh grid. The same seed always builds the same
+     * factory. Lines may start without a Producer, end without a Receiver or hold items
+     * already. With faulty set a few lines end in a Receiver that does not accept their item,
+     * and with mixed set a few lines also carry a second kind of item.
+     */
+    public static GameGrid randomFactory(long seed, int lines, boolean faulty, boolean mixed) {
+        Random random = new Random(seed);
+        GameGrid grid = new GameGrid(40);
+        List<Coordinate> cells = new ArrayList<>(grid.getGrid().keySet());
+        cells.sort(Comparator.comparingInt(Coordinate::hashCode));
+        int id = 1;
+        for (int l = 0; l < lines; l++) {
+            Item key = new Item(l % 3 == 0 ? "gear" : "bolt");
+            List<Transport> line = new ArrayList<>();
+            if (random.nextInt(10) > 0) {
+                Producer producer = new Producer(id++, key);
+                producer.setCounter(random.nextInt(2));
+                line.add(producer);
+            }
+            int belts = random.nextInt(6) == 0 ? 60 + random.nextInt(150) : random.nextInt(40);
+            for (int b = 0; b < belts; b++) {
+                Belt belt = new Belt(id++);
+                if (random.nextInt(3) == 0) {
+                    belt.setInventory(key);
+                }
+                line.add(belt);
+            }
+            if (random.nextInt(5) > 0 || line.isEmpty()) {
+                Receiver receiver = new Receiver(id++,
+                        faulty && l % 4 == 1 ? new Item("scrap") : key);
+                if (random.nextBoolean()) {
+                    receiver.setPending(key);
+                }
+                line.add(receiver);
+            }
+            if (mixed && l % 4 == 3 && line.size() > 2 && line.get(1) instanceof Belt belt) {
+                belt.setInventory(new Item("scrap"));
+            }
+            for (int i = 0; i + 1 < line.size(); i++) {
+                line.get(i).setOutput(line.get(i + 1).getPath());
+                line.get(i + 1).setInput(line.get(i).getPath());
+            }
+            for (Transport transport : line) {
+                grid.setCoordinate(cells.get(transport.getId()), transport);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Describes the full state of every Transport on the grid, ordered by id.
+     */
+    public static String state(GameGrid grid) {
+        List<Transport> transports = new ArrayList<>();
+        for (GridComponent component : grid.getGrid().values()) {
+            if (component instanceof Transport transport) {
+                transports.add(transport);
+            }
+        }
+        transports.sort(Comparator.comparingInt(Transport::getId));
+        StringBuilder state = new StringBuilder();
+        for (Transport transport : transports) {
+            state.append(transport).append('=');
+            if (transport instanceof Receiver receiver) {
+                state.append(receiver.getPending()).append('/').append(receiver.getDelivered());
+            } else if (transport instanceof Producer producer) {
+                state.append(producer.getInventory()).append('/').append(producer.getCounter());
+            } else {
+                state.append(transport.getInventory());
+            }
+            state.append(' ');
+        }
+        return state.toString();
+    }
+
+    /**
+     * The original tick: every node of every line through Transport.tick, from the tail, with
+     * a BadStateException recorded and skipping the rest of the line.
+     */
+    public static TickStrategy naive(LineSchedule schedule, FaultRecorder faults) {
+        return new TickStrategy() {
+            private long ticks;
+
+            @Override
+            public void load() {
+                ticks = 0;
+            }
+
+            @Override
+            public void tick() {
+                ticks++;
+                for (Transport[] line : schedule.lines()) {
+                    try {
+                        for (Transport transport : line) {
+                            transport.tick();
+                        }
+                    } catch (BadStateException bse) {
+                        faults.record(ticks, line[0].getId(), 0, 0);
+                    }
+                }
+            }
+
+            @Override
+            public void store() {
+            }
+        };
+    }
+
+    /**
+     * Steps a reference engine and a candidate engine through runs of varying length and
+     * checks their grids and fault counts after every run.
+     */
+    public static void assertMatches(TickStrategy.Factory factory, long seed, boolean faulty,
+                                     boolean mixed) {
+        SimulationEngine reference = new SimulationEngine(randomFactory(seed, 30, faulty, mixed),
+                StrategyEquivalenceTest::naive);
+        SimulationEngine candidate = new SimulationEngine(randomFactory(seed, 30, faulty, mixed),
+                factory);
+        assertEquals(state(reference.getGrid()), state(candidate.getGrid()));
+        long[] runs = {1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 1, 144};
+        for (long run : runs) {
+            reference.step(run);
+            candidate.step(run);
+            assertEquals("after " + reference.getTickCount() + " ticks",
+                    state(reference.getGrid()), state(candidate.getGrid()));
+            assertEquals(reference.getFaults().getFaultCount(),
+                    candidate.getFaults().getFaultCount());
+        }
+    }
+
+    /**
+     * Builds the faulty factory of seed 7 with no Receiver holding a bad item yet, so its first
+     * fault comes a few ticks in, then checks that a strict step running into it leaves the
+     * grid and tick count as they were, and that stepping on afterwards still matches the
+     * reference.
+     */
+    public static void assertStrictStepUndone(TickStrategy.Factory factory,
+                                              Consumer<SimulationEngine> step) {
+        GameGrid grid = randomFactory(7, 30, true, false);
+        GameGrid expected = randomFactory(7, 30, true, false);
+        for (GameGrid each : List.of(grid, expected)) {
+            for (GridComponent component : each.getGrid().values()) {
+                if (component instanceof Receiver receiver
+                        && !receiver.accepts(receiver.getPending())) {
+                    receiver.setPending(null);
+                }
+            }
+        }
+        SimulationEngine reference = new SimulationEngine(expected, StrategyEquivalenceTest::naive);
+        SimulationEngine candidate = new SimulationEngine(grid, factory);
+        String before = state(grid);
+        candidate.getFaults().setStrict(true);
+        boolean thrown = false;
+        try {
+            step.accept(candidate);
+        } catch (BadStateException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+        assertTrue(candidate.getFaults().getTick(0) > 1);
+        assertEquals(before, state(grid));
+        assertEquals(0, candidate.getTickCount());
+        candidate.getFaults().setStrict(false);
+        reference.step(50);
+        step.accept(candidate);
+        assertEquals(state(expected), state(grid));
+    }
+
+    @Test
+    public void strictStepUndone() {
+        TickStrategy.Factory[] factories = {ObjectStrategy::new, ArrayStrategy::new,
+            BitsetStrategy::new, SegmentStrategy::new, ActiveSetStrategy::new,
+            EventStrategy::new, OffHeapStrategy::new, AnalyticStrategy::new, CycleStrategy::new,
+            BufferedStrategy::new};
+        for (TickStrategy.Factory factory : factories) {
+            assertStrictStepUndone(factory, engine -> engine.step(50));
+        }
+        assertStrictStepUndone(ObjectStrategy::new, engine -> engine.fastForward(50));
+        assertStrictStepUndone(ObjectStrategy::new, engine -> engine.profile(50));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertStrictStepUndone((schedule, faults) -> new ParallelStrategy(schedule, faults,
+                    pool), engine -> engine.step(50));
+            assertStrictStepUndone((schedule, faults) -> new BufferedStrategy(schedule, faults,
+                    pool, 37), engine -> engine.step(50));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void objectStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(ObjectStrategy::new, seed, false, false);
+        }
+        assertMatches(ObjectStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void objectStrategyGeneralLines() {
+        GameGrid grid = randomFactory(5, 30, true, false);
+        Belt odd = new Belt(90_000) {
+        };
+        Receiver tail = new Receiver(90_001, new Item("gear"));
+        odd.setOutput(tail.getPath());
+        tail.setInput(odd.getPath());
+        odd.setInventory(new Item("gear"));
+        List<Coordinate> free = new ArrayList<>();
+        grid.getGrid().forEach((coordinate, component) -> {
+            if (!(component instanceof Transport)) {
+                free.add(coordinate);
+            }
+        });
+        grid.setCoordinate(free.get(0), odd);
+        grid.setCoordinate(free.get(1), tail);
+        SimulationEngine engine = new SimulationEngine(grid);
+        TickPlan plan = new TickPlan(engine.getSchedule(), new FaultRecorder());
+        assertEquals(1, plan.getGeneralLineCount());
+
+        SimulationEngine reference = new SimulationEngine(randomFactory(5, 30, true, false),
+                StrategyEquivalenceTest::naive);
+        engine.step(50);
+        reference.step(50);
+        assertEquals(1, tail.getDelivered());
+        assertTrue(state(engine.getGrid()).startsWith(state(reference.getGrid())));
+    }
+
+    @Test
+    public void arrayStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(ArrayStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void arrayStrategyFaults() {
+        assertMatches(ArrayStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void bitsetStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(BitsetStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void bitsetStrategyFaults() {
+        assertMatches(BitsetStrategy::new, 7, true, false);
+    }
+
+    @Test(expected = UnsupportedActionException.class)
+    public void bitsetStrategyMixed() {
+        assertMatches(BitsetStrategy::new, 7, false, true);
+    }
+
+    @Test
+    public void segmentStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(SegmentStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void segmentStrategyFaults() {
+        assertMatches(SegmentStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void activeSetStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(ActiveSetStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void activeSetStrategyFaults() {
+        assertMatches(ActiveSetStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void activeSetParksFaultedLines() {
+        LineSchedule schedule = LineSchedule.compile(randomFactory(3, 30, true, false));
+        ActiveSetStrategy strategy = new ActiveSetStrategy(schedule, new FaultRecorder());
+        strategy.load();
+        assertEquals(30, strategy.getActiveCount());
+        strategy.advance(500);
+        // only lines that keep delivering are still ticked
+        assertEquals(new LineAnalysis(schedule).count(LineState.FLOWING),
+                strategy.getActiveCount());
+        assertTrue(strategy.getActiveCount() < 22);
+        for (long seed = 0; seed < 5; seed++) {
+            assertMatches(ActiveSetStrategy::new, seed, true, true);
+        }
+    }
+
+    @Test
+    public void eventStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(EventStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void eventStrategyFaults() {
+        assertMatches(EventStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void eventStrategyParksFaultedLines() {
+        LineSchedule schedule = LineSchedule.compile(randomFactory(3, 30, true, false));
+        FaultRecorder faults = new FaultRecorder();
+        EventStrategy strategy = new EventStrategy(schedule, faults);
+        strategy.load();
+        strategy.advance(500);
+        // each stopped line is recorded once when it stops, and once more for the rest
+        int stopped = faults.size();
+        assertTrue(stopped > 0);
+        strategy.store();
+        assertEquals(2 * stopped, faults.size());
+        assertTrue(faults.getFaultCount() > faults.size());
+        for (long seed = 0; seed < 5; seed++) {
+            assertMatches(EventStrategy::new, seed, true, true);
+        }
+    }
+
+    @Test
+    public void offHeapStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(OffHeapStrategy::new, seed, false, false);
+        }
+        assertMatches(OffHeapStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void analyticStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(AnalyticStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void analyticStrategyFaults() {
+        assertMatches(AnalyticStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void cycleStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(CycleStrategy::new, seed, false, false);
+        }
+    }
+
+    @Test
+    public void cycleStrategyFaults() {
+        assertMatches(CycleStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void parallelStrategy() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TickStrategy.Factory factory =
+                    (schedule, faults) -> new ParallelStrategy(schedule, faults, pool);
+            for (long seed = 0; seed < 20; seed++) {
+                assertMatches(factory, seed, false, false);
+            }
+            assertMatches(factory, 7, true, true);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelStrategyBalanced() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SimulationEngine engine = new SimulationEngine(randomFactory(3, 30, false, false));
+            long[] costs = new ParallelStrategy(engine.getSchedule(), new FaultRecorder(), pool)
+                    .getUnitCosts();
+            long max = Arrays.stream(costs).max().orElse(0);
+            long longest = 0;
+            for (int l = 0; l < engine.getSchedule().getLineCount(); l++) {
+                longest = Math.max(longest, engine.getSchedule().getLine(l).size());
+            }
+            assertEquals(4, costs.length);
+            assertTrue(max <= Arrays.stream(costs).sum() / 4 + longest);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void bufferedStrategy() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertMatches(BufferedStrategy::new, seed, false, false);
+        }
+        assertMatches(BufferedStrategy::new, 7, true, true);
+    }
+
+    @Test
+    public void bufferedStrategyChunked() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TickStrategy.Factory factory =
+                    (schedule, faults) -> new BufferedStrategy(schedule, faults, pool, 37);
+            for (long seed = 0; seed < 5; seed++) {
+                assertMatches(factory, seed, false, false);
+            }
+            assertMatches(factory, 7, true, true);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void cycleStrategyLongRun() {
+        for (long seed = 0; seed < 5; seed++) {
+            SimulationEngine reference = new SimulationEngine(
+                    randomFactory(seed, 30, seed % 2 == 1, false), AnalyticStrategy::new);
+            SimulationEngine candidate = new SimulationEngine(
+                    randomFactory(seed, 30, seed % 2 == 1, false), CycleStrategy::new);
+            reference.step(10_000_001);
+            candidate.step(10_000_001);
+            assertEquals(state(reference.getGrid()), state(candidate.getGrid()));
+        }
+    }
+}
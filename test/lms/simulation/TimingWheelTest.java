@@ -0,0 +1,69 @@
+package lms.simulation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setup() {
+        wheel = new TimingWheel(16);
+    }
+
+    @Test
+    public void pollsInDeadlineOrder() {
+        long[] deadlines = {5_000_000L, 3, 70, 4096, 63, 64, 1L << 40, 262_143};
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.schedule(deadlines[i], i);
+        }
+        long[] sorted = deadlines.clone();
+        java.util.Arrays.sort(sorted);
+        for (long deadline : sorted) {
+            int event = wheel.poll(Long.MAX_VALUE);
+            assertEquals(deadline, deadlines[event]);
+            assertEquals(deadline, wheel.current());
+        }
+        assertEquals(-1, wheel.poll(Long.MAX_VALUE));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void pollStopsAtLimit() {
+        wheel.schedule(100, 1);
+        wheel.schedule(10_000, 2);
+        assertEquals(-1, wheel.poll(99));
+        assertEquals(1, wheel.poll(9_999));
+        assertEquals(-1, wheel.poll(9_999));
+        assertTrue(wheel.current() <= 9_999);
+        wheel.schedule(9_999, 3);
+        assertEquals(3, wheel.poll(10_000));
+        assertEquals(2, wheel.poll(10_000));
+    }
+
+    @Test
+    public void reusesEntries() {
+        for (long deadline = 0; deadline < 1000; deadline += 7) {
+            wheel.schedule(deadline + 5, (int) deadline);
+            assertEquals(deadline, wheel.poll(deadline + 5) + 0L);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pastDeadline() {
+        wheel.schedule(50, 0);
+        wheel.poll(50);
+        wheel.schedule(49, 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void full() {
+        for (int i = 0; i <= 16; i++) {
+            wheel.schedule(i, i);
+        }
+    }
+}